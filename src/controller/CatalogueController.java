@@ -1,6 +1,8 @@
 package controller;
 
 import javafx.animation.TranslateTransition;
+import javafx.application.Platform;
+import javafx.collections.FXCollections;
 import javafx.event.Event;
 import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
@@ -16,8 +18,12 @@ import javafx.stage.FileChooser;
 import javafx.stage.Stage;
 import javafx.util.Duration;
 import javafx.util.StringConverter;
+import model.DataExporter;
 import model.DuplicateException;
 import model.NullValueException;
+import model.RangeIndex;
+import model.SearchExecutor;
+import model.SearchIndex;
 import model.objects.Log;
 import model.objects.*;
 import org.apache.pdfbox.pdmodel.PDDocument;
@@ -36,10 +42,14 @@ import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
 import java.net.URL;
+import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.ResourceBundle;
-import java.util.function.Predicate;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.function.Function;
 
 public class CatalogueController implements Initializable {
     private static Catalogue selectedCatalogueToView = null;
@@ -86,6 +96,11 @@ public class CatalogueController implements Initializable {
     @FXML Button viewLogButton;
     @FXML Button addCatalogueClearButton;
     @FXML Button editCatalogueClearButton;
+    @FXML ProgressIndicator searchProgressIndicator;
+    @FXML DatePicker activeOnDatePicker;
+
+    private final SearchExecutor<Catalogue> catalogueSearch = new SearchExecutor<>(results ->
+            catalogueTableView.setItems(FXCollections.observableArrayList(results)));
 
     ImageView selectedCatalogueImage;
 
@@ -117,6 +132,7 @@ public class CatalogueController implements Initializable {
         searchComboBox.getItems().addAll("ID", "Name", "Products", "Discounts",
                 "Starting Date", "Ending Date", "Description");
         searchComboBox.setValue("Name");
+        searchProgressIndicator.visibleProperty().bind(catalogueSearch.busyProperty());
 
         // Configure product table columns and items
         catalogueIdTableColumn.setCellValueFactory(new PropertyValueFactory<>("catalogueId"));
@@ -247,23 +263,19 @@ public class CatalogueController implements Initializable {
 
     public void addCatalogueSubmitButton_OnAction (Event event) {
         try {
-            for (Catalogue catalogue: Catalogue.catalogues) {
-                if (catalogue.getName().equals(addCatalogueName.getText())) {
-                    throw new DuplicateException();
-                }
+            if (Catalogue.isNameTaken(addCatalogueName.getText())) {
+                throw new DuplicateException();
             }
             if (addCatalogueStartingDate.getValue() == null || addCatalogueEndingDate.getValue() == null) {
                 throw new NullValueException.Date();
             }
 
-            List<Integer> nameData = new ArrayList<>();
-            for (Product product : addCatalogueSelectedProducts.getItems()) {
-                nameData.add(product.getProductId());
-            }
-
-            List<Double> discountData = new ArrayList<>();
-            for (Product product : addCatalogueSelectedProducts.getItems()) {
-                discountData.add(product.getDiscount());
+            List<Product> selectedProducts = addCatalogueSelectedProducts.getItems();
+            int[] nameData = new int[selectedProducts.size()];
+            double[] discountData = new double[selectedProducts.size()];
+            for (int line = 0; line < selectedProducts.size(); line++) {
+                nameData[line] = selectedProducts.get(line).getProductId();
+                discountData[line] = selectedProducts.get(line).getDiscount();
             }
 
             if (nameData == null) {
@@ -337,16 +349,12 @@ public class CatalogueController implements Initializable {
             }
 
             editCatalogueName.setText(selectedCatalogue.getName());
-            int productIdCount = 0;
-            for (Integer productId: selectedCatalogue.getProductsId()) {
-                for (Product product: Product.products) {
-                    if (productId == product.getProductId()) {
-                        Product catalogueProduct = product;
-                        catalogueProduct.setDiscount(selectedCatalogue.getProductsDiscount().get(productIdCount));
-                        editCatalogueSelectedProducts.getItems().add(catalogueProduct);
-                    }
+            for (int line = 0; line < selectedCatalogue.getLineCount(); line++) {
+                Product catalogueProduct = Product.findById(selectedCatalogue.getLineProductId(line));
+                if (catalogueProduct != null) {
+                    catalogueProduct.setDiscount(selectedCatalogue.getLineDiscount(line));
+                    editCatalogueSelectedProducts.getItems().add(catalogueProduct);
                 }
-                productIdCount++;
             }
             editCatalogueStartingDate.setValue(selectedCatalogue.getDateStart());
             editCatalogueEndingDate.setValue(selectedCatalogue.getDateEnd());
@@ -406,24 +414,19 @@ public class CatalogueController implements Initializable {
     public void editCatalogueSubmitButton_OnAction (Event event) {
         try {
             Catalogue selectedCatalogue = catalogueTableView.getSelectionModel().getSelectedItem();
-            for (Catalogue catalogue: Catalogue.catalogues) {
-                if (catalogue.getName().equals(editCatalogueName.getText()) &&
-                        !editCatalogueName.getText().equals(selectedCatalogue.getName())) {
-                    throw new DuplicateException();
-                }
+            if (Catalogue.isNameTaken(editCatalogueName.getText(), selectedCatalogue)) {
+                throw new DuplicateException();
             }
             if (editCatalogueStartingDate.getValue() == null || editCatalogueEndingDate.getValue() == null) {
                 throw new NullValueException.Date();
             }
 
-            List<Integer> nameData = new ArrayList<>();
-            for (Product product : editCatalogueSelectedProducts.getItems()) {
-                nameData.add(product.getProductId());
-            }
-
-            List<Double> discountData = new ArrayList<>();
-            for (Product product : editCatalogueSelectedProducts.getItems()) {
-                discountData.add(product.getDiscount());
+            List<Product> selectedProducts = editCatalogueSelectedProducts.getItems();
+            int[] nameData = new int[selectedProducts.size()];
+            double[] discountData = new double[selectedProducts.size()];
+            for (int line = 0; line < selectedProducts.size(); line++) {
+                nameData[line] = selectedProducts.get(line).getProductId();
+                discountData[line] = selectedProducts.get(line).getDiscount();
             }
 
             if (nameData == null) {
@@ -437,8 +440,7 @@ public class CatalogueController implements Initializable {
             }
 
             selectedCatalogue.setName(editCatalogueName.getText());
-            selectedCatalogue.setProductsId(nameData);
-            selectedCatalogue.setProductsDiscount(discountData);
+            selectedCatalogue.setProducts(nameData, discountData);
             selectedCatalogue.setDateStart(editCatalogueStartingDate.getValue());
             selectedCatalogue.setDateEnd(editCatalogueEndingDate.getValue());
             selectedCatalogue.setDescription(editCatalogueDescription.getText());
@@ -548,16 +550,13 @@ public class CatalogueController implements Initializable {
                 content.newLine();
 
                 content.setFont(font, contentFont);
-                int productsIndexCount = 0;
-                for (Integer productId: selectedCatalogue.getProductsId()) {
-                    Predicate<Product> productPredicate = product -> product.getProductId() == productId;
-                    String productName = Product.products.filtered(productPredicate).get(0).getName();
+                for (int line = 0; line < selectedCatalogue.getLineCount(); line++) {
+                    String productName = Product.findById(selectedCatalogue.getLineProductId(line)).getName();
 
                     String contentString = productName + " - " +
-                            selectedCatalogue.getProductsDiscount().get(productsIndexCount) + "% OFF";
+                            selectedCatalogue.getLineDiscount(line) + "% OFF";
                     content.showText(contentString);
                     content.newLine();
-                    productsIndexCount++;
                 }
                 content.newLine();
 
@@ -619,16 +618,13 @@ public class CatalogueController implements Initializable {
                 content.newLine();
 
                 content.setFont(font, contentFont);
-                int productsIndexCount = 0;
-                for (Integer productId: selectedCatalogue.getProductsId()) {
-                    Predicate<Product> productPredicate = product -> product.getProductId() == productId;
-                    String productName = Product.products.filtered(productPredicate).get(0).getName();
+                for (int line = 0; line < selectedCatalogue.getLineCount(); line++) {
+                    String productName = Product.findById(selectedCatalogue.getLineProductId(line)).getName();
 
                     String contentString = productName + " - " +
-                            selectedCatalogue.getProductsDiscount().get(productsIndexCount) + "% OFF";
+                            selectedCatalogue.getLineDiscount(line) + "% OFF";
                     content.showText(contentString);
                     content.newLine();
-                    productsIndexCount++;
                 }
                 content.newLine();
 
@@ -679,6 +675,44 @@ public class CatalogueController implements Initializable {
         }
     }
 
+    public void exportCataloguesButton_OnAction(Event event) {
+        Stage mainStage = (Stage) ((Node) event.getSource()).getScene().getWindow();
+        final FileChooser fileChooser = new FileChooser();
+        fileChooser.setInitialFileName("catalogues.csv");
+        fileChooser.getExtensionFilters().addAll(
+                new FileChooser.ExtensionFilter("CSV", "*.csv"),
+                new FileChooser.ExtensionFilter("JSON Lines", "*.jsonl"),
+                new FileChooser.ExtensionFilter("Compressed CSV or JSON Lines", "*.csv.gz", "*.jsonl.gz"));
+        File exportFile = fileChooser.showSaveDialog(mainStage);
+        if (exportFile == null) {
+            return;
+        }
+
+        // The list is copied here, the file is written in the background
+        DataExporter exporter = DataExporter.catalogues();
+        Thread exportThread = new Thread(() -> {
+            try {
+                long rowCount = exporter.write(exportFile);
+                Platform.runLater(() -> {
+                    Dialog dialog = new Dialog();
+                    dialog.setContentText("Exported " + rowCount + " catalogues to " + exportFile + ".");
+                    dialog.getDialogPane().getButtonTypes().add(ButtonType.CLOSE);
+                    dialog.show();
+                });
+            } catch (IOException e) {
+                e.printStackTrace();
+                Platform.runLater(() -> {
+                    Dialog dialog = new Dialog();
+                    dialog.setContentText("The file could not be written.");
+                    dialog.getDialogPane().getButtonTypes().add(ButtonType.CLOSE);
+                    dialog.show();
+                });
+            }
+        }, "export");
+        exportThread.setDaemon(true);
+        exportThread.start();
+    }
+
     public void viewLogButton_OnAction (Event event) throws IOException {
         Stage logStage = new Stage();
         logStage.setScene(new Scene(FXMLLoader.load(getClass().getResource("/view/Log.fxml"))));
@@ -696,34 +730,94 @@ public class CatalogueController implements Initializable {
     private void refreshTableView() {
         catalogueTableView.getColumns().get(0).setVisible(false);
         catalogueTableView.getColumns().get(0).setVisible(true);
+        // Search results are a snapshot, so run the search again to pick up the change
+        searchText_OnChange(null);
+    }
+
+    public void activeOnDatePicker_OnAction (Event event) {
+        searchText_OnChange(null);
     }
 
     public void searchText_OnChange (Event event) {
-        Predicate<Catalogue> searchComboBoxValue = null;
+        String text = searchText.getText();
+        // Only catalogues running on the chosen day are shown (see Catalogue.findActiveOn)
+        LocalDate activeOn = activeOnDatePicker.getValue();
+        if (text == null || text.isEmpty()) {
+            if (activeOn == null) {
+                catalogueSearch.cancel();
+                catalogueTableView.setItems(Catalogue.catalogues);
+            } else {
+                catalogueSearch.submit(() -> Catalogue.findActiveOn(activeOn));
+            }
+            return;
+        }
+        // Indexes are looked up here on the FX thread; the query runs on a search thread
+        Callable<List<Catalogue>> query = null;
         switch (searchComboBox.getValue().toString()) {
             case "ID":
-                searchComboBoxValue = catalogue -> String.valueOf(catalogue.getCatalogueId()).contains(searchText.getText());
+                query = SearchIndex.forField(Catalogue.catalogues, "ID",
+                        catalogue -> String.valueOf(catalogue.getCatalogueId())).query(text);
                 break;
             case "Name":
-                searchComboBoxValue = catalogue -> catalogue.getName().contains(searchText.getText());
+                query = SearchIndex.forField(Catalogue.catalogues, "Name", Catalogue::getName).query(text);
                 break;
             case "Products":
-                searchComboBoxValue = catalogue -> String.valueOf(catalogue.getProductsName()).contains(searchText.getText());
+                // Matched through the product names, then the catalogues listing those products
+                SearchIndex<Product> productIndex = SearchIndex.forField(Product.products, "Name", Product::getName);
+                query = () -> {
+                    Set<Catalogue> results = new LinkedHashSet<>();
+                    for (Product product: productIndex.search(text)) {
+                        results.addAll(Catalogue.findByProductId(product.getProductId()));
+                    }
+                    return new ArrayList<>(results);
+                };
                 break;
             case "Discounts":
-                searchComboBoxValue = catalogue -> String.valueOf(catalogue.getProductsDiscount()).contains(searchText.getText());
+                query = SearchIndex.forField(Catalogue.catalogues, "Discounts",
+                        catalogue -> String.valueOf(catalogue.getProductsDiscount())).query(text);
                 break;
+            // The dates also take ranges such as ">=2020-01-01" or "2020-01-01..2020-06-30" (see RangeIndex);
+            // anything else is matched as text
             case "Starting Date":
-                searchComboBoxValue = catalogue -> String.valueOf(catalogue.getDateStart()).contains(searchText.getText());
+                query = dateQuery(text, "Starting Date", Catalogue::getDateStart);
                 break;
             case "Ending Date":
-                searchComboBoxValue = catalogue -> String.valueOf(catalogue.getDateEnd()).contains(searchText.getText());
+                query = dateQuery(text, "Ending Date", Catalogue::getDateEnd);
                 break;
             case "Description":
-                searchComboBoxValue = catalogue -> String.valueOf(catalogue.getDescription()).contains(searchText.getText());
+                query = SearchIndex.forField(Catalogue.catalogues, "Description", Catalogue::getDescription).query(text);
                 break;
         }
-        catalogueTableView.setItems(Catalogue.catalogues.filtered(searchComboBoxValue));
+        if (query == null) {
+            catalogueSearch.cancel();
+            catalogueTableView.setItems(Catalogue.catalogues);
+            return;
+        }
+        if (activeOn != null) {
+            Callable<List<Catalogue>> textQuery = query;
+            query = () -> {
+                List<Catalogue> results = new ArrayList<>();
+                for (Catalogue catalogue: textQuery.call()) {
+                    if (catalogue.isActiveOn(activeOn)) {
+                        results.add(catalogue);
+                    }
+                }
+                return results;
+            };
+        }
+        catalogueSearch.submit(query);
+    }
+
+    private static Callable<List<Catalogue>> dateQuery(String text, String field, Function<Catalogue, LocalDate> dateOf) {
+        RangeIndex.Range range = RangeIndex.Range.parseDate(text);
+        if (range == null) {
+            return SearchIndex.forField(Catalogue.catalogues, field,
+                    catalogue -> String.valueOf(dateOf.apply(catalogue))).query(text);
+        }
+        return RangeIndex.forField(Catalogue.catalogues, field, catalogue -> {
+            LocalDate date = dateOf.apply(catalogue);
+            return date == null ? Double.NaN : date.toEpochDay();
+        }).query(range);
     }
 
     public static Catalogue getSelectedCatalogueToView() {
@@ -18,7 +18,7 @@ import model.objects.Log;
 import model.objects.*;
 
 import java.net.URL;
-import java.util.Date;
+import java.time.LocalDate;
 import java.util.ResourceBundle;
 import java.util.function.Predicate;
 
@@ -123,10 +123,7 @@ public class HomeAdministratorController implements Initializable {
         descriptionTableColumn.setCellValueFactory(new PropertyValueFactory<>("description"));
 
         loginTableView.setItems(Log.loginLogs);
-        Predicate<Log> loginPredicate = log -> ("" + log.getTimestamp().getDate() + log.getTimestamp().getMonth() +
-                log.getTimestamp().getYear()).equals("" + new Date().getDate() + new Date().getMonth() +
-                new Date().getYear());
-        loginCountLabel.setText(String.valueOf(Log.loginLogs.filtered(loginPredicate).stream().count()));
+        loginCountLabel.setText(String.valueOf(Log.countByKindOn("LoginLog", LocalDate.now())));
 
         Predicate<User> activeUserPredicate = user -> user.getStatus()==true;
         FilteredList<User> activeUser = User.users.filtered(activeUserPredicate);
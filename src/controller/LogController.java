@@ -1,13 +1,27 @@
 package controller;
 
+import javafx.collections.FXCollections;
+import javafx.event.Event;
 import javafx.fxml.FXML;
 import javafx.fxml.Initializable;
+import javafx.scene.control.ButtonType;
+import javafx.scene.control.DatePicker;
+import javafx.scene.control.Dialog;
 import javafx.scene.control.TableColumn;
 import javafx.scene.control.TableView;
 import javafx.scene.control.cell.PropertyValueFactory;
+import model.LogList;
+import model.LogSegments;
 import model.objects.Log;
 
+import java.io.IOException;
 import java.net.URL;
+import java.text.ParseException;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.List;
 import java.util.ResourceBundle;
 
 public class LogController implements Initializable {
@@ -27,6 +41,11 @@ public class LogController implements Initializable {
     @FXML TableColumn supplierTimestampTableColumn;
     @FXML TableColumn supplierUserTableColumn;
     @FXML TableColumn supplierActionTableColumn;
+    @FXML DatePicker jumpToDatePicker;
+
+    private TableView<Log> tableView;
+    private String kind;
+    private LogList activeLogs;
 
     @Override
     public void initialize(URL url, ResourceBundle resourceBundle) {
@@ -38,30 +57,82 @@ public class LogController implements Initializable {
                 productTimestampTableColumn.setCellValueFactory(timestamp);
                 productUserTableColumn.setCellValueFactory(user);
                 productActionTableColumn.setCellValueFactory(action);
-                productTableView.setItems(Log.productLogs);
-                productTableView.toFront();
+                show(productTableView, "ProductLog", Log.productLogs);
                 break;
             case "catalogueButton":
                 catalogueTimestampTableColumn.setCellValueFactory(timestamp);
                 catalogueUserTableColumn.setCellValueFactory(user);
                 catalogueActionTableColumn.setCellValueFactory(action);
-                catalogueTableView.setItems(Log.catalogueLogs);
-                catalogueTableView.toFront();
+                show(catalogueTableView, "CatalogueLog", Log.catalogueLogs);
                 break;
             case "supplierButton":
                 supplierTimestampTableColumn.setCellValueFactory(timestamp);
                 supplierUserTableColumn.setCellValueFactory(user);
                 supplierActionTableColumn.setCellValueFactory(action);
-                supplierTableView.setItems(Log.supplierLogs);
-                supplierTableView.toFront();
+                show(supplierTableView, "SupplierLog", Log.supplierLogs);
                 break;
             case "userButton":
                 loginTimestampTableColumn.setCellValueFactory(timestamp);
                 loginUserTableColumn.setCellValueFactory(user);
                 loginActionTableColumn.setCellValueFactory(action);
-                loginTableView.setItems(Log.loginLogs);
-                loginTableView.toFront();
+                show(loginTableView, "LoginLog", Log.loginLogs);
                 break;
         }
     }
+
+    public void jumpToDatePicker_OnAction (Event event) {
+        LocalDate date = jumpToDatePicker.getValue();
+        if (date == null) {
+            return;
+        }
+        int index;
+        try {
+            // Months before the active segment are shown from their sealed segment, one month at a time
+            List<Log> sealedLogs = LogSegments.findByKindIn(kind, YearMonth.from(date));
+            if (sealedLogs != null) {
+                tableView.setItems(FXCollections.observableArrayList(sealedLogs));
+                index = firstIndexFrom(sealedLogs, date);
+            } else {
+                tableView.setItems(activeLogs);
+                index = activeLogs.firstIndexFrom(date.atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli());
+            }
+        } catch (IOException | ParseException e) {
+            Dialog dialog = new Dialog();
+            dialog.setTitle("Error");
+            dialog.setContentText("Unable to read the log file.");
+            dialog.getDialogPane().getButtonTypes().add(ButtonType.CLOSE);
+            dialog.show();
+            e.printStackTrace();
+            return;
+        }
+        if (index == tableView.getItems().size()) {
+            Dialog dialog = new Dialog();
+            dialog.setTitle("No entries");
+            dialog.setContentText("Nothing was logged on or after that date.");
+            dialog.getDialogPane().getButtonTypes().add(ButtonType.CLOSE);
+            dialog.show();
+            return;
+        }
+        tableView.scrollTo(index);
+        tableView.getSelectionModel().clearAndSelect(index);
+    }
+
+    // Saved entries are read from the log file as they are scrolled to, rather than all held by the table
+    private void show(TableView<Log> tableView, String kind, LogList logs) {
+        this.tableView = tableView;
+        this.kind = kind;
+        activeLogs = logs;
+        tableView.setItems(activeLogs);
+        tableView.toFront();
+    }
+
+    private int firstIndexFrom(List<Log> logs, LocalDate date) {
+        Date start = Date.from(date.atStartOfDay(ZoneId.systemDefault()).toInstant());
+        for (int index = 0; index < logs.size(); index++) {
+            if (!logs.get(index).getTimestamp().before(start)) {
+                return index;
+            }
+        }
+        return logs.size();
+    }
 }
@@ -7,7 +7,9 @@ import javafx.scene.Parent;
 import javafx.scene.Scene;
 import javafx.stage.Screen;
 import javafx.stage.Stage;
+import model.Checkpoint;
 import model.IOWriterReader;
+import model.LogSegments;
 
 import java.io.*;
 import java.text.ParseException;
@@ -23,10 +25,13 @@ public class Main extends Application {
         loginStage.setHeight(screenBounds.getHeight());
         loginStage.setMaximized(true);
         loginStage.show();
+        Checkpoint.start();
     }
 
 
     public static void main(String[] args) throws IOException, ParseException {
+        // Move past months out of the log files into sealed segments, so only recent logs are loaded
+        LogSegments.rotate();
         IOWriterReader.onStartup();
         launch(args);
     }
@@ -15,6 +15,7 @@ import javafx.scene.control.Label;
 import javafx.scene.layout.BorderPane;
 import javafx.stage.Screen;
 import javafx.stage.Stage;
+import model.Checkpoint;
 import model.IOWriterReader;
 import model.objects.Log;
 import model.objects.Administrator;
@@ -48,9 +49,11 @@ public class NavigationController implements Initializable {
     @FXML Label informationLabel;
     @FXML Label viewDataInLabel;
     @FXML Label explorerLabel;
+    @FXML Label checkpointLabel;
 
     @FXML
     public void initialize(URL location, ResourceBundle resourceBundle) {
+        checkpointLabel.textProperty().bind(Checkpoint.statusProperty());
         homeButton.fire();
     }
 
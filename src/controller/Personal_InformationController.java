@@ -14,15 +14,16 @@ import model.Authentication;
 import model.IllegalInputFormatException;
 import model.NullValueException;
 import model.RegularExpressionPattern;
+import model.SearchExecutor;
 import model.objects.Log;
 
+import java.io.IOException;
 import java.net.URL;
 import java.security.NoSuchAlgorithmException;
 import java.security.spec.InvalidKeySpecException;
 import java.util.ArrayList;
 import java.util.IllegalFormatException;
 import java.util.ResourceBundle;
-import java.util.function.Predicate;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -60,6 +61,16 @@ public class Personal_InformationController implements Initializable {
     TranslateTransition changeEmailPaneOpenAnimation;
     TranslateTransition changeEmailPaneCloseAnimation;
 
+    private final ObservableList<Log> personalLog = FXCollections.observableArrayList();
+    // Reads the user's logs on a search thread, as the log files may have to be read
+    private final SearchExecutor<Log> personalLogLookup = new SearchExecutor<>(personalLog::setAll, e -> {
+        Dialog dialog = new Dialog();
+        dialog.setTitle("Error");
+        dialog.setContentText("Unable to read the log files.");
+        dialog.getDialogPane().getButtonTypes().add(ButtonType.CLOSE);
+        dialog.show();
+    });
+
 
     public void initialize(URL url, ResourceBundle rb) {
         // Initializing the animation objects with their corresponding pane
@@ -81,15 +92,11 @@ public class Personal_InformationController implements Initializable {
         statusText.setText(LoginController.getInstance().getStatusText());
 
         // Initialize table view and items
-        ObservableList<Log> personalLog = FXCollections.observableArrayList();
-        personalLog.addAll(Log.loginLogs);
-        personalLog.addAll(Log.productLogs);
-        personalLog.addAll(Log.catalogueLogs);
-        personalLog.addAll(Log.supplierLogs);
+        int userId = LoginController.getInstance().getUserId();
+        personalLogLookup.runNow(() -> Log.findByUserId(userId));
         timestampTableColumn.setCellValueFactory(new PropertyValueFactory<>("timestamp"));
         actionTableColumn.setCellValueFactory(new PropertyValueFactory<>("action"));
-        Predicate<Log> logPredicate = log -> log.getUserId() == LoginController.getInstance().getUserId();
-        personalLogTableView.setItems(personalLog.filtered(logPredicate));
+        personalLogTableView.setItems(personalLog);
 
         // Hide save and discard changes button
         editInformationSaveButton.setVisible(false);
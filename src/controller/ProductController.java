@@ -1,7 +1,9 @@
 package controller;
 
 import javafx.animation.TranslateTransition;
+import javafx.collections.FXCollections;
 import javafx.embed.swing.SwingFXUtils;
+import javafx.application.Platform;
 import javafx.event.Event;
 import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
@@ -17,9 +19,15 @@ import javafx.stage.FileChooser;
 import javafx.stage.Stage;
 import javafx.util.Duration;
 import javafx.util.StringConverter;
+import model.DataExporter;
 import model.DuplicateException;
+import model.FuzzyIndex;
 import model.IOWriterReader;
 import model.NullValueException;
+import model.ProductImporter;
+import model.RangeIndex;
+import model.SearchExecutor;
+import model.SearchIndex;
 import model.UtilisedException;
 import model.objects.*;
 
@@ -28,8 +36,12 @@ import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.ResourceBundle;
-import java.util.function.Predicate;
+import java.util.concurrent.Callable;
+import java.util.function.Function;
+import java.util.function.ToDoubleFunction;
 
 public class ProductController implements Initializable {
     private static Product selectedProductToView = null;
@@ -76,6 +88,10 @@ public class ProductController implements Initializable {
     @FXML Button addProductClearButton;
     @FXML Button editProductClearButton;
     @FXML Button viewLogButton;
+    @FXML ProgressIndicator searchProgressIndicator;
+
+    private final SearchExecutor<Product> productSearch = new SearchExecutor<>(results ->
+            productTableView.setItems(FXCollections.observableArrayList(results)));
 
     // Setting up animation destination, duration, and object
     static final double actionBarWidth = 100.0;
@@ -108,9 +124,10 @@ public class ProductController implements Initializable {
         editProductPaneCloseAnimation.setToX(startOfBoundsAnchorPane);
 
         // Populate combo box and set default value
-        searchComboBox.getItems().addAll("PID", "Name", "Category", "Supplier",
+        searchComboBox.getItems().addAll("PID", "Name", "Name (fuzzy)", "Category", "Supplier",
                                         "Quantity", "Purchasing Price", "Selling Price", "Profit Margin");
-        searchComboBox.setValue("Product Name");
+        searchComboBox.setValue("Name");
+        searchProgressIndicator.visibleProperty().bind(productSearch.busyProperty());
 
         // Configure product table columns and items
         productIdTableColumn.setCellValueFactory(new PropertyValueFactory<>("productId"));
@@ -247,10 +264,8 @@ public class ProductController implements Initializable {
     public void categoriesCategoryDeleteButton_OnAction(Event event) throws IOException {
         try {
             Category selectedCategory = categoriesCategoryTableView.getSelectionModel().getSelectedItem();
-            for (Product product: Product.products) {
-                if (product.getCategoryId() == selectedCategory.getCategoryId()) {
-                    throw new UtilisedException();
-                }
+            if (Product.isCategoryUsed(selectedCategory.getCategoryId())) {
+                throw new UtilisedException();
             }
             Log.productLogs.add(new Log("Deleted category: " + selectedCategory.getCategoryName()));
             Category.categories.remove(selectedCategory);
@@ -296,10 +311,8 @@ public class ProductController implements Initializable {
 
     public void addProductSubmitButton_OnAction (Event event) throws IOException {
         try {
-            for (Product product: Product.products) {
-                if (product.getName().equals(addProductName.getText())) {
-                    throw new DuplicateException();
-                }
+            if (Product.isNameTaken(addProductName.getText())) {
+                throw new DuplicateException();
             }
             if (addProductName.getText() == null || addProductCategoryId.getValue() == null || addProductSupplierId.getValue() == null ||
                     addProductQuantity.getText() == null || addProductPurchasingPrice.getText() == null || addProductSellingPrice.getText() == null) {
@@ -367,10 +380,8 @@ public class ProductController implements Initializable {
             }
 
             editProductName.setText(selectedProduct.getName());
-            Predicate<Category> categoryPredicate = category -> category.getCategoryId() == selectedProduct.getCategoryId();
-            editProductCategoryId.setValue(Category.categories.filtered(categoryPredicate).get(0));
-            Predicate<Supplier> supplierPredicate = supplier -> supplier.getSupplierId() == selectedProduct.getSupplierId();
-            editProductSupplierId.setValue(Supplier.suppliers.filtered(supplierPredicate).get(0));
+            editProductCategoryId.setValue(Category.findById(selectedProduct.getCategoryId()));
+            editProductSupplierId.setValue(Supplier.findById(selectedProduct.getSupplierId()));
             editProductQuantity.setText(String.valueOf(selectedProduct.getQuantity()));
             editProductPurchasingPrice.setText(String.valueOf(selectedProduct.getPurchasingPrice()));
             editProductSellingPrice.setText(String.valueOf(selectedProduct.getSellingPrice()));
@@ -406,11 +417,8 @@ public class ProductController implements Initializable {
     public void editProductSubmitButton_OnAction (Event event) {
         try {
             Product selectedProduct = productTableView.getSelectionModel().getSelectedItem();
-            for (Product product: Product.products) {
-                if (product.getName().equals(editProductName.getText()) &&
-                        !editProductName.getText().equals(selectedProduct.getName())) {
-                    throw new DuplicateException();
-                }
+            if (Product.isNameTaken(editProductName.getText(), selectedProduct)) {
+                throw new DuplicateException();
             }
             if (editProductName.getText() == null || editProductCategoryId.getValue() == null || editProductSupplierId.getValue() == null ||
                     editProductQuantity.getText() == null || editProductPurchasingPrice.getText() == null || editProductSellingPrice.getText() == null) {
@@ -477,10 +485,8 @@ public class ProductController implements Initializable {
             confirmationPopup.showAndWait();
 
             if (confirmationPopup.getResult() == ButtonType.YES) {
-                for (Catalogue catalogue: Catalogue.catalogues) {
-                    if (catalogue.getProductsId().contains(selectedProduct.getProductId())) {
-                        throw new UtilisedException();
-                    }
+                if (Catalogue.isProductUsed(selectedProduct.getProductId())) {
+                    throw new UtilisedException();
                 }
                 Product.products.remove(selectedProduct);
                 Log.productLogs.add(new Log("Deleted product: " + selectedProduct.getName()));
@@ -492,13 +498,102 @@ public class ProductController implements Initializable {
             dialog.getDialogPane().getButtonTypes().add(ButtonType.CLOSE);
             dialog.show();
         } catch (UtilisedException exception) {
+            Product selectedProduct = productTableView.getSelectionModel().getSelectedItem();
+            StringBuilder catalogueNames = new StringBuilder();
+            for (Catalogue catalogue: Catalogue.findByProductId(selectedProduct.getProductId())) {
+                catalogueNames.append("\n- ").append(catalogue.getName());
+            }
             Dialog dialog = new Dialog();
-            dialog.setContentText("Product is being used in a catalogue.");
+            dialog.setContentText("Product is being used in a catalogue:" + catalogueNames);
             dialog.getDialogPane().getButtonTypes().add(ButtonType.CLOSE);
             dialog.show();
         }
     }
 
+    public void importProductsButton_OnAction(Event event) {
+        Stage mainStage = (Stage) ((Node) event.getSource()).getScene().getWindow();
+        final FileChooser fileChooser = new FileChooser();
+        fileChooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("CSV files", "*.csv"));
+        File csvFile = fileChooser.showOpenDialog(mainStage);
+        if (csvFile == null) {
+            return;
+        }
+
+        // The lookups are copied here, the file is read and validated in the background
+        ProductImporter importer = ProductImporter.prepare(csvFile);
+        Thread importThread = new Thread(() -> {
+            try {
+                importer.read();
+                Platform.runLater(() -> {
+                    try {
+                        importer.commit();
+                    } catch (IOException e) {
+                        e.printStackTrace();
+                    }
+                    refreshTableView();
+
+                    Dialog dialog = new Dialog();
+                    if (importer.getRejectedCount() == 0) {
+                        dialog.setContentText("Imported " + importer.getAcceptedCount() + " products.");
+                    } else {
+                        dialog.setContentText("Imported " + importer.getAcceptedCount() + " products. "
+                                + importer.getRejectedCount() + " rows were rejected, see " + importer.getErrorFile() + ".");
+                    }
+                    dialog.getDialogPane().getButtonTypes().add(ButtonType.CLOSE);
+                    dialog.show();
+                });
+            } catch (IOException e) {
+                e.printStackTrace();
+                Platform.runLater(() -> {
+                    Dialog dialog = new Dialog();
+                    dialog.setContentText("The file could not be read.");
+                    dialog.getDialogPane().getButtonTypes().add(ButtonType.CLOSE);
+                    dialog.show();
+                });
+            }
+        }, "import");
+        importThread.setDaemon(true);
+        importThread.start();
+    }
+
+    public void exportProductsButton_OnAction(Event event) {
+        Stage mainStage = (Stage) ((Node) event.getSource()).getScene().getWindow();
+        final FileChooser fileChooser = new FileChooser();
+        fileChooser.setInitialFileName("products.csv");
+        fileChooser.getExtensionFilters().addAll(
+                new FileChooser.ExtensionFilter("CSV", "*.csv"),
+                new FileChooser.ExtensionFilter("JSON Lines", "*.jsonl"),
+                new FileChooser.ExtensionFilter("Compressed CSV or JSON Lines", "*.csv.gz", "*.jsonl.gz"));
+        File exportFile = fileChooser.showSaveDialog(mainStage);
+        if (exportFile == null) {
+            return;
+        }
+
+        // The list is copied here, the file is written in the background
+        DataExporter exporter = DataExporter.products();
+        Thread exportThread = new Thread(() -> {
+            try {
+                long rowCount = exporter.write(exportFile);
+                Platform.runLater(() -> {
+                    Dialog dialog = new Dialog();
+                    dialog.setContentText("Exported " + rowCount + " products to " + exportFile + ".");
+                    dialog.getDialogPane().getButtonTypes().add(ButtonType.CLOSE);
+                    dialog.show();
+                });
+            } catch (IOException e) {
+                e.printStackTrace();
+                Platform.runLater(() -> {
+                    Dialog dialog = new Dialog();
+                    dialog.setContentText("The file could not be written.");
+                    dialog.getDialogPane().getButtonTypes().add(ButtonType.CLOSE);
+                    dialog.show();
+                });
+            }
+        }, "export");
+        exportThread.setDaemon(true);
+        exportThread.start();
+    }
+
     public void viewLogButton_OnAction (Event event) throws IOException {
         Stage logStage = new Stage();
         logStage.setScene(new Scene(FXMLLoader.load(getClass().getResource("/view/Log.fxml"))));
@@ -517,6 +612,8 @@ public class ProductController implements Initializable {
     private void refreshTableView() {
         productTableView.getColumns().get(0).setVisible(false);
         productTableView.getColumns().get(0).setVisible(true);
+        // Search results are a snapshot, so run the search again to pick up the change
+        searchText_OnChange(null);
     }
 
     private void refreshCategoryTableView() {
@@ -524,34 +621,91 @@ public class ProductController implements Initializable {
     }
 
     public void searchText_OnChange (Event event) {
-        Predicate<Product> searchComboBoxValue = null;
+        String text = searchText.getText();
+        if (text == null || text.isEmpty()) {
+            productSearch.cancel();
+            productTableView.setItems(Product.products);
+            return;
+        }
+        // Indexes are looked up here on the FX thread; the query runs on a search thread
+        Callable<List<Product>> query = null;
         switch (searchComboBox.getValue().toString()) {
-            case "ID":
-                searchComboBoxValue = product -> String.valueOf(product.getProductId()).contains(searchText.getText());
+            case "PID":
+                query = SearchIndex.forField(Product.products, "ID",
+                        product -> String.valueOf(product.getProductId())).query(text);
                 break;
             case "Name":
-                searchComboBoxValue = product -> product.getName().contains(searchText.getText());
+                query = SearchIndex.forField(Product.products, "Name", Product::getName).query(text);
+                break;
+            case "Name (fuzzy)":
+                // Tolerates typos; results are ranked by edit distance
+                query = FuzzyIndex.forField(Product.products, "Name", Product::getName).query(text);
                 break;
             case "Category":
-                searchComboBoxValue = product -> String.valueOf(product.getCategoryName()).contains(searchText.getText());
+                // Matched through the category names, then the products using those categories
+                SearchIndex<Category> categoryIndex = SearchIndex.forField(Category.categories, "Name",
+                        Category::getCategoryName);
+                query = () -> {
+                    List<Product> results = new ArrayList<>();
+                    for (Category category: categoryIndex.search(text)) {
+                        results.addAll(Product.findByCategoryId(category.getCategoryId()));
+                    }
+                    return results;
+                };
                 break;
             case "Supplier":
-                searchComboBoxValue = product -> String.valueOf(product.getSupplierName()).contains(searchText.getText());
+                SearchIndex<Supplier> supplierIndex = SearchIndex.forField(Supplier.suppliers, "Name", Supplier::getName);
+                query = () -> {
+                    List<Product> results = new ArrayList<>();
+                    for (Supplier supplier: supplierIndex.search(text)) {
+                        results.addAll(Product.findBySupplierId(supplier.getSupplierId()));
+                    }
+                    return results;
+                };
                 break;
+            // The number fields also take ranges such as "<10", ">=2.5" or "10..20" (see RangeIndex); anything
+            // else is matched as text
             case "Quantity":
-                searchComboBoxValue = product -> String.valueOf(product.getQuantity()).contains(searchText.getText());
+                query = numberQuery(text, "Quantity", Product::getQuantity,
+                        product -> String.valueOf(product.getQuantity()));
                 break;
             case "Purchasing Price":
-                searchComboBoxValue = product -> String.valueOf(product.getPurchasingPrice()).contains(searchText.getText());
+                query = numberQuery(text, "Purchasing Price", Product::getPurchasingPrice,
+                        product -> String.valueOf(product.getPurchasingPrice()));
                 break;
             case "Selling Price":
-                searchComboBoxValue = product -> String.valueOf(product.getSellingPrice()).contains(searchText.getText());
+                query = numberQuery(text, "Selling Price", Product::getSellingPrice,
+                        product -> String.valueOf(product.getSellingPrice()));
                 break;
             case "Profit Margin":
-                searchComboBoxValue = product -> String.valueOf(product.getProfitMargin()).contains(searchText.getText());
+                query = numberQuery(text.replace("%", ""), "Profit Margin", ProductController::profitMarginOf,
+                        product -> String.valueOf(product.getProfitMargin()));
                 break;
         }
-        productTableView.setItems(Product.products.filtered(searchComboBoxValue));
+        if (query == null) {
+            productSearch.cancel();
+            productTableView.setItems(Product.products);
+            return;
+        }
+        productSearch.submit(query);
+    }
+
+    private static Callable<List<Product>> numberQuery(String text, String field, ToDoubleFunction<Product> keyOf,
+                                                     Function<Product, String> valueOf) {
+        RangeIndex.Range range = RangeIndex.Range.parse(text);
+        if (range == null) {
+            return SearchIndex.forField(Product.products, field, valueOf).query(text);
+        }
+        return RangeIndex.forField(Product.products, field, keyOf).query(range);
+    }
+
+    // The profit margin is stored as text, e.g. "25.0%"
+    private static double profitMarginOf(Product product) {
+        try {
+            return Double.parseDouble(product.getProfitMargin().replace("%", ""));
+        } catch (NullPointerException | NumberFormatException e) {
+            return Double.NaN;
+        }
     }
 
     public static Product getSelectedProductToView() {
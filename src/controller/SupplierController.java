@@ -1,27 +1,39 @@
 package controller;
 
 import javafx.animation.TranslateTransition;
+import javafx.application.Platform;
+import javafx.collections.FXCollections;
 import javafx.event.Event;
 import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
 import javafx.fxml.Initializable;
+import javafx.scene.Node;
 import javafx.scene.Scene;
 import javafx.scene.control.*;
 import javafx.scene.control.cell.PropertyValueFactory;
 import javafx.scene.layout.AnchorPane;
+import javafx.stage.FileChooser;
 import javafx.stage.Stage;
 import javafx.util.Duration;
+import model.DataExporter;
 import model.DuplicateException;
+import model.FuzzyIndex;
 import model.IllegalInputFormatException;
 import model.NullValueException;
 import model.RegularExpressionPattern;
+import model.SearchExecutor;
+import model.SearchIndex;
+import model.UtilisedException;
 import model.objects.Log;
+import model.objects.Product;
 import model.objects.Supplier;
 
+import java.io.File;
 import java.io.IOException;
 import java.net.URL;
+import java.util.List;
 import java.util.ResourceBundle;
-import java.util.function.Predicate;
+import java.util.concurrent.Callable;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -67,6 +79,10 @@ public class SupplierController implements Initializable {
 
     @FXML Button addSupplierClearButton;
     @FXML Button editSupplierClearButton;
+    @FXML ProgressIndicator searchProgressIndicator;
+
+    private final SearchExecutor<Supplier> supplierSearch = new SearchExecutor<>(results ->
+            supplierTableView.setItems(FXCollections.observableArrayList(results)));
 
     // Setting up animation destination, duration, and object
     static final double actionBarWidth = 100.0;
@@ -93,9 +109,10 @@ public class SupplierController implements Initializable {
         editSupplierPaneCloseAnimation.setToX(startOfBoundsAnchorPane);
 
         // Populate combo box and set default value
-        searchComboBox.getItems().addAll("ID", "Name", "Address", "Post Code", "Country",
+        searchComboBox.getItems().addAll("ID", "Name", "Name (fuzzy)", "Address", "Post Code", "Country",
                                             "State/Province", "City", "Contact Number", "Email Address");
         searchComboBox.setValue("Name");
+        searchProgressIndicator.visibleProperty().bind(supplierSearch.busyProperty());
 
         // Configure table columns and table items
         supplierIdTableColumn.setCellValueFactory(new PropertyValueFactory<>("supplierId"));
@@ -144,10 +161,11 @@ public class SupplierController implements Initializable {
 
     public void addSupplierSubmitButton_OnAction (Event event) throws IOException {
         try {
-            for (Supplier supplier: Supplier.suppliers) {
-                if (supplier.getName().equals(addSupplierName.getText())) {
-                    throw new DuplicateException();
-                }
+            if (Supplier.isNameTaken(addSupplierName.getText())) {
+                throw new DuplicateException();
+            }
+            if (Supplier.isEmailAddressTaken(addSupplierEmailAddress.getText())) {
+                throw new DuplicateException.EmailAddress();
             }
             boolean patternMatch = false;
             for (String contactNumberPatternString: RegularExpressionPattern.getContactNumberPatternStringArrayList()) {
@@ -181,6 +199,11 @@ public class SupplierController implements Initializable {
             addSupplierClearButton.fire();
             addSupplierPaneCloseAnimation.play();
             refreshTableView();
+        } catch (DuplicateException.EmailAddress exception) {
+            Dialog dialog = new Dialog();
+            dialog.setContentText("Email address has already been used by another supplier.");
+            dialog.getDialogPane().getButtonTypes().add(ButtonType.CLOSE);
+            dialog.show();
         } catch (DuplicateException exception) {
             Dialog dialog = new Dialog();
             dialog.setContentText("Supplier name has already been used.");
@@ -280,11 +303,11 @@ public class SupplierController implements Initializable {
     public void editSupplierSubmitButton_OnAction (Event event) {
         try {
             Supplier selectedSupplier = supplierTableView.getSelectionModel().getSelectedItem();
-            for (Supplier supplier: Supplier.suppliers) {
-                if (supplier.getName().equals(editSupplierName.getText()) &&
-                        !editSupplierName.getText().equals(selectedSupplier.getName())) {
-                    throw new DuplicateException();
-                }
+            if (Supplier.isNameTaken(editSupplierName.getText(), selectedSupplier)) {
+                throw new DuplicateException();
+            }
+            if (Supplier.isEmailAddressTaken(editSupplierEmailAddress.getText(), selectedSupplier)) {
+                throw new DuplicateException.EmailAddress();
             }
             boolean patternMatch = false;
             for (String contactNumberPatternString: RegularExpressionPattern.getContactNumberPatternStringArrayList()) {
@@ -322,6 +345,11 @@ public class SupplierController implements Initializable {
             Log.supplierLogs.add(new Log("Edited supplier: " + selectedSupplier.getName()));
             editSupplierPaneCloseAnimation.play();
             refreshTableView();
+        } catch (DuplicateException.EmailAddress exception) {
+            Dialog dialog = new Dialog();
+            dialog.setContentText("Email address has already been used by another supplier.");
+            dialog.getDialogPane().getButtonTypes().add(ButtonType.CLOSE);
+            dialog.show();
         } catch (DuplicateException exception) {
             Dialog dialog = new Dialog();
             dialog.setContentText("Supplier name has already been used.");
@@ -372,6 +400,9 @@ public class SupplierController implements Initializable {
             confirmationPopup.showAndWait();
 
             if (confirmationPopup.getResult() == ButtonType.YES) {
+                if (Product.isSupplierUsed(selectedSupplier.getSupplierId())) {
+                    throw new UtilisedException();
+                }
                 Supplier.suppliers.remove(selectedSupplier);
             }
             Log.supplierLogs.add(new Log("Deleted supplier: " + selectedSupplier.getName()));
@@ -381,9 +412,52 @@ public class SupplierController implements Initializable {
             dialog.setContentText("User must be selected.");
             dialog.getDialogPane().getButtonTypes().add(ButtonType.CLOSE);
             dialog.show();
+        } catch (UtilisedException exception) {
+            Dialog dialog = new Dialog();
+            dialog.setContentText("Supplier is being used by a product.");
+            dialog.getDialogPane().getButtonTypes().add(ButtonType.CLOSE);
+            dialog.show();
         }
     }
 
+    public void exportSuppliersButton_OnAction(Event event) {
+        Stage mainStage = (Stage) ((Node) event.getSource()).getScene().getWindow();
+        final FileChooser fileChooser = new FileChooser();
+        fileChooser.setInitialFileName("suppliers.csv");
+        fileChooser.getExtensionFilters().addAll(
+                new FileChooser.ExtensionFilter("CSV", "*.csv"),
+                new FileChooser.ExtensionFilter("JSON Lines", "*.jsonl"),
+                new FileChooser.ExtensionFilter("Compressed CSV or JSON Lines", "*.csv.gz", "*.jsonl.gz"));
+        File exportFile = fileChooser.showSaveDialog(mainStage);
+        if (exportFile == null) {
+            return;
+        }
+
+        // The list is copied here, the file is written in the background
+        DataExporter exporter = DataExporter.suppliers();
+        Thread exportThread = new Thread(() -> {
+            try {
+                long rowCount = exporter.write(exportFile);
+                Platform.runLater(() -> {
+                    Dialog dialog = new Dialog();
+                    dialog.setContentText("Exported " + rowCount + " suppliers to " + exportFile + ".");
+                    dialog.getDialogPane().getButtonTypes().add(ButtonType.CLOSE);
+                    dialog.show();
+                });
+            } catch (IOException e) {
+                e.printStackTrace();
+                Platform.runLater(() -> {
+                    Dialog dialog = new Dialog();
+                    dialog.setContentText("The file could not be written.");
+                    dialog.getDialogPane().getButtonTypes().add(ButtonType.CLOSE);
+                    dialog.show();
+                });
+            }
+        }, "export");
+        exportThread.setDaemon(true);
+        exportThread.start();
+    }
+
     public void viewLogButton_OnAction (Event event) throws IOException {
         Stage logStage = new Stage();
         logStage.setScene(new Scene(FXMLLoader.load(getClass().getResource("/view/Log.fxml"))));
@@ -401,40 +475,62 @@ public class SupplierController implements Initializable {
     private void refreshTableView() {
         supplierTableView.getColumns().get(0).setVisible(false);
         supplierTableView.getColumns().get(0).setVisible(true);
+        // Search results are a snapshot, so run the search again to pick up the change
+        searchText_OnChange(null);
     }
 
     public void searchText_OnChange (Event event) {
-        Predicate<Supplier> searchComboBoxValue = null;
+        String text = searchText.getText();
+        if (text == null || text.isEmpty()) {
+            supplierSearch.cancel();
+            supplierTableView.setItems(Supplier.suppliers);
+            return;
+        }
+        // Indexes are looked up here on the FX thread; the query runs on a search thread
+        Callable<List<Supplier>> query = null;
         switch (searchComboBox.getValue().toString()) {
             case "ID":
-                searchComboBoxValue = supplier -> String.valueOf(supplier.getSupplierId()).contains(searchText.getText());
+                query = SearchIndex.forField(Supplier.suppliers, "ID",
+                        supplier -> String.valueOf(supplier.getSupplierId())).query(text);
                 break;
             case "Name":
-                searchComboBoxValue = supplier -> supplier.getName().contains(searchText.getText());
+                query = SearchIndex.forField(Supplier.suppliers, "Name", Supplier::getName).query(text);
+                break;
+            case "Name (fuzzy)":
+                // Tolerates typos; results are ranked by edit distance
+                query = FuzzyIndex.forField(Supplier.suppliers, "Name", Supplier::getName).query(text);
                 break;
             case "Address":
-                searchComboBoxValue = supplier -> supplier.getAddress().contains(searchText.getText());
+                query = SearchIndex.forField(Supplier.suppliers, "Address", Supplier::getAddress).query(text);
                 break;
             case "Post Code":
-                searchComboBoxValue = supplier -> supplier.getPostCode().contains(searchText.getText());
+                query = SearchIndex.forField(Supplier.suppliers, "Post Code", Supplier::getPostCode).query(text);
                 break;
             case "Country":
-                searchComboBoxValue = supplier -> supplier.getCountry().contains(searchText.getText());
+                query = SearchIndex.forField(Supplier.suppliers, "Country", Supplier::getCountry).query(text);
                 break;
             case "State/Province":
-                searchComboBoxValue = supplier -> supplier.getStateOrProvince().contains(searchText.getText());
+                query = SearchIndex.forField(Supplier.suppliers, "State/Province",
+                        Supplier::getStateOrProvince).query(text);
                 break;
             case "City":
-                searchComboBoxValue = supplier -> supplier.getCity().contains(searchText.getText());
+                query = SearchIndex.forField(Supplier.suppliers, "City", Supplier::getCity).query(text);
                 break;
             case "Contact Number":
-                searchComboBoxValue = supplier -> supplier.getContactNumber().contains(searchText.getText());
+                query = SearchIndex.forField(Supplier.suppliers, "Contact Number",
+                        Supplier::getContactNumber).query(text);
                 break;
             case "Email Address":
-                searchComboBoxValue = supplier -> supplier.getEmailAddress().contains(searchText.getText());
+                query = SearchIndex.forField(Supplier.suppliers, "Email Address",
+                        Supplier::getEmailAddress).query(text);
                 break;
         }
-        supplierTableView.setItems(Supplier.suppliers.filtered(searchComboBoxValue));
+        if (query == null) {
+            supplierSearch.cancel();
+            supplierTableView.setItems(Supplier.suppliers);
+            return;
+        }
+        supplierSearch.submit(query);
     }
 
     public static Supplier getSelectedSupplierToView() {
@@ -3,6 +3,7 @@ package controller;
 import javafx.animation.TranslateTransition;
 import javafx.beans.binding.Bindings;
 import javafx.beans.binding.BooleanBinding;
+import javafx.collections.FXCollections;
 import javafx.event.Event;
 import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
@@ -15,6 +16,7 @@ import javafx.stage.Stage;
 import javafx.util.Duration;
 import model.*;
 import model.objects.Administrator;
+import model.objects.Catalogue;
 import model.objects.Product_Manager;
 import model.objects.User;
 
@@ -22,9 +24,10 @@ import java.io.IOException;
 import java.net.URL;
 import java.security.NoSuchAlgorithmException;
 import java.security.spec.InvalidKeySpecException;
+import java.util.List;
 import java.util.Optional;
 import java.util.ResourceBundle;
-import java.util.function.Predicate;
+import java.util.concurrent.Callable;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -55,6 +58,10 @@ public class UserController implements Initializable {
     @FXML TextField addUserEmailAddress;
 
     @FXML Button addUserClearButton;
+    @FXML ProgressIndicator searchProgressIndicator;
+
+    private final SearchExecutor<User> userSearch = new SearchExecutor<>(results ->
+            userTableView.setItems(FXCollections.observableArrayList(results)));
 
     // Setting up animation destination, duration, and object
     static final double actionBarWidth = 100.0;
@@ -84,6 +91,7 @@ public class UserController implements Initializable {
         searchComboBox.getItems().addAll("ID", "Username", "Role", "Name",
                 "Address", "Contact Number", "Email Address");
         searchComboBox.setValue("Name");
+        searchProgressIndicator.visibleProperty().bind(userSearch.busyProperty());
 
         addUserRole.getItems().addAll("Product Manager", "Administrator");
         addUserRole.setValue("Product Manager");
@@ -132,10 +140,8 @@ public class UserController implements Initializable {
 
     public void addUserSubmitButton_OnAction (Event event) throws IOException, InvalidKeySpecException, NoSuchAlgorithmException {
         try {
-            for (User user: User.users) {
-                if (user.getUsername().equals(addUserUsername.getText())) {
-                    throw new DuplicateException();
-                }
+            if (User.isUsernameTaken(addUserUsername.getText())) {
+                throw new DuplicateException();
             }
             boolean patternMatch = false;
             for (String contactNumberPatternString: RegularExpressionPattern.getContactNumberPatternStringArrayList()) {
@@ -249,6 +255,9 @@ public class UserController implements Initializable {
             confirmationPopup.showAndWait();
 
             if (confirmationPopup.getResult() == ButtonType.YES) {
+                if (Catalogue.isUserUsed(selectedUser.getUserId())) {
+                    throw new UtilisedException();
+                }
                 User.users.remove(selectedUser);
             }
             refreshTableView();
@@ -257,6 +266,11 @@ public class UserController implements Initializable {
             dialog.setContentText("User must be selected.");
             dialog.getDialogPane().getButtonTypes().add(ButtonType.CLOSE);
             dialog.show();
+        } catch (UtilisedException exception) {
+            Dialog dialog = new Dialog();
+            dialog.setContentText("User has created a catalogue.");
+            dialog.getDialogPane().getButtonTypes().add(ButtonType.CLOSE);
+            dialog.show();
         }
     }
 
@@ -319,34 +333,48 @@ public class UserController implements Initializable {
     private void refreshTableView() {
         userTableView.getColumns().get(0).setVisible(false);
         userTableView.getColumns().get(0).setVisible(true);
+        // Search results are a snapshot, so run the search again to pick up the change
+        searchText_OnChange(null);
     }
 
     public void searchText_OnChange (Event event) {
-        Predicate<User> searchComboBoxValue = null;
+        String text = searchText.getText();
+        if (text == null || text.isEmpty()) {
+            userSearch.cancel();
+            userTableView.setItems(User.users);
+            return;
+        }
+        // Indexes are looked up here on the FX thread; the query runs on a search thread
+        Callable<List<User>> query = null;
         switch (searchComboBox.getValue().toString()) {
             case "ID":
-                searchComboBoxValue = user -> String.valueOf(user.getUserId()).contains(searchText.getText());
+                query = SearchIndex.forField(User.users, "ID", user -> String.valueOf(user.getUserId())).query(text);
                 break;
             case "Username":
-                searchComboBoxValue = user -> user.getUsername().contains(searchText.getText());
+                query = SearchIndex.forField(User.users, "Username", User::getUsername).query(text);
                 break;
             case "Role":
-                searchComboBoxValue = user -> user.getRole().contains(searchText.getText());
+                query = SearchIndex.forField(User.users, "Role", User::getRole).query(text);
                 break;
             case "Name":
-                searchComboBoxValue = user -> user.getName().contains(searchText.getText());
+                query = SearchIndex.forField(User.users, "Name", User::getName).query(text);
                 break;
             case "Address":
-                searchComboBoxValue = user -> user.getAddress().contains(searchText.getText());
+                query = SearchIndex.forField(User.users, "Address", User::getAddress).query(text);
                 break;
             case "Contact Number":
-                searchComboBoxValue = user -> user.getContactNumber().contains(searchText.getText());
+                query = SearchIndex.forField(User.users, "Contact Number", User::getContactNumber).query(text);
                 break;
             case "Email Address":
-                searchComboBoxValue = user -> user.getEmailAddress().contains(searchText.getText());
+                query = SearchIndex.forField(User.users, "Email Address", User::getEmailAddress).query(text);
                 break;
         }
-        userTableView.setItems(User.users.filtered(searchComboBoxValue));
+        if (query == null) {
+            userSearch.cancel();
+            userTableView.setItems(User.users);
+            return;
+        }
+        userSearch.submit(query);
     }
 
     private boolean isInvalid(String string) {
@@ -27,7 +27,6 @@ import java.io.File;
 import java.io.IOException;
 import java.net.URL;
 import java.util.ResourceBundle;
-import java.util.function.Predicate;
 
 public class ViewController implements Initializable {
     @FXML AnchorPane productView;
@@ -112,8 +111,7 @@ public class ViewController implements Initializable {
                                 category.getCategoryName().equals(categoryName)).findFirst().orElse(null);
                     }
                 });
-                Predicate<Category> categoryPredicate = category -> category.getCategoryId() == selectedProduct.getCategoryId();
-                viewProductCategoryId.setValue(Category.categories.filtered(categoryPredicate).get(0));
+                viewProductCategoryId.setValue(Category.findById(selectedProduct.getCategoryId()));
                 viewProductSupplierId.setConverter(new StringConverter<Supplier>() {
                     @Override
                     public String toString(Supplier supplier) {
@@ -130,8 +128,7 @@ public class ViewController implements Initializable {
                                 supplier.getName().equals(supplierName)).findFirst().orElse(null);
                     }
                 });
-                Predicate<Supplier> supplierPredicate = supplier -> supplier.getSupplierId() == selectedProduct.getSupplierId();
-                viewProductSupplierId.setValue(Supplier.suppliers.filtered(supplierPredicate).get(0));
+                viewProductSupplierId.setValue(Supplier.findById(selectedProduct.getSupplierId()));
                 viewProductQuantity.setText(String.valueOf(selectedProduct.getQuantity()));
                 viewProductPurchasingPrice.setText(String.valueOf(selectedProduct.getPurchasingPrice()));
                 viewProductSellingPrice.setText(String.valueOf(selectedProduct.getSellingPrice()));
@@ -162,16 +159,12 @@ public class ViewController implements Initializable {
 
                 Catalogue selectedCatalogue = CatalogueController.getSelectedCatalogueToView();
                 viewCatalogueName.setText(selectedCatalogue.getName());
-                int productIdCount = 0;
-                for (Integer productId: selectedCatalogue.getProductsId()) {
-                    for (Product product: Product.products) {
-                        if (productId == product.getProductId()) {
-                            Product catalogueProduct = product;
-                            catalogueProduct.setDiscount(selectedCatalogue.getProductsDiscount().get(productIdCount));
-                            viewCatalogueSelectedProducts.getItems().add(catalogueProduct);
-                        }
+                for (int line = 0; line < selectedCatalogue.getLineCount(); line++) {
+                    Product catalogueProduct = Product.findById(selectedCatalogue.getLineProductId(line));
+                    if (catalogueProduct != null) {
+                        catalogueProduct.setDiscount(selectedCatalogue.getLineDiscount(line));
+                        viewCatalogueSelectedProducts.getItems().add(catalogueProduct);
                     }
-                    productIdCount++;
                 }
                 viewCatalogueStartingDate.setValue(selectedCatalogue.getDateStart());
                 viewCatalogueEndingDate.setValue(selectedCatalogue.getDateEnd());
@@ -203,16 +196,13 @@ public class ViewController implements Initializable {
                     content.newLine();
 
                     content.setFont(font, contentFont);
-                    int productsIndexCount = 0;
-                    for (Integer productId: selectedCatalogue.getProductsId()) {
-                        Predicate<Product> productPredicate = product -> product.getProductId() == productId;
-                        String productName = Product.products.filtered(productPredicate).get(0).getName();
+                    for (int line = 0; line < selectedCatalogue.getLineCount(); line++) {
+                        String productName = Product.findById(selectedCatalogue.getLineProductId(line)).getName();
 
                         String contentString = productName + " - " +
-                                selectedCatalogue.getProductsDiscount().get(productsIndexCount) + "% OFF";
+                                selectedCatalogue.getLineDiscount(line) + "% OFF";
                         content.showText(contentString);
                         content.newLine();
-                        productsIndexCount++;
                     }
                     content.newLine();
 
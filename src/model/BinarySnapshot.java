@@ -0,0 +1,269 @@
+package model;
+
+import model.objects.Catalogue;
+import model.objects.Product;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.text.ParseException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+
+public class BinarySnapshot {
+    // Binary alternative to Product.txt and Catalogue.txt. Once the .bin files exist they are the ones loaded
+    // and saved; the text files are left for export and hand editing (see main() for the converter).
+    //
+    // Layout: header, then the columns of every record one after another so they can be read in bulk.
+    // - header:    magic (int), version (short), kind (short), record count (int), payload length (int), CRC32 of payload (long)
+    // - product:   productId[], categoryId[], supplierId[], quantity[] (int), purchasingPrice[], sellingPrice[] (double),
+    //              name[] (length-prefixed UTF-8)
+    // - catalogue: catalogueId[], userId[], dateStart[], dateEnd[] (int, epoch day), lineCount[] (int),
+    //              productsId (packed int), productsDiscount (packed double), name[], description[] (length-prefixed UTF-8)
+    public static final File productBinaryFile = new File(IOWriterReader.dataDirectory + "Product.bin");
+    public static final File catalogueBinaryFile = new File(IOWriterReader.dataDirectory + "Catalogue.bin");
+
+    private static final int magic = 0x4F4F444A;
+    private static final short version = 1;
+    private static final short productKind = 1;
+    private static final short catalogueKind = 2;
+    private static final int headerLength = 4 + 2 + 2 + 4 + 4 + 8;
+
+    public static boolean isActive() {
+        return productBinaryFile.exists() && catalogueBinaryFile.exists();
+    }
+
+    public static ByteBuffer encodeProducts(List<Product> products) {
+        int count = products.size();
+        List<byte[]> names = new ArrayList<>(count);
+        int textLength = 0;
+        for (Product product: products) {
+            byte[] name = product.getName().getBytes(StandardCharsets.UTF_8);
+            names.add(name);
+            textLength += 4 + name.length;
+        }
+
+        ByteBuffer payload = ByteBuffer.allocate(count * (4 * 4 + 8 * 2) + textLength);
+        for (Product product: products) {
+            payload.putInt(product.getProductId());
+        }
+        for (Product product: products) {
+            payload.putInt(product.getCategoryId());
+        }
+        for (Product product: products) {
+            payload.putInt(product.getSupplierId());
+        }
+        for (Product product: products) {
+            payload.putInt(product.getQuantity());
+        }
+        for (Product product: products) {
+            payload.putDouble(product.getPurchasingPrice());
+        }
+        for (Product product: products) {
+            payload.putDouble(product.getSellingPrice());
+        }
+        for (byte[] name: names) {
+            payload.putInt(name.length).put(name);
+        }
+        return withHeader(productKind, count, payload);
+    }
+
+    public static List<Product> decodeProducts(ByteBuffer buffer) throws IOException {
+        int count = readHeader(buffer, productKind);
+        int[] productId = readInts(buffer, count);
+        int[] categoryId = readInts(buffer, count);
+        int[] supplierId = readInts(buffer, count);
+        int[] quantity = readInts(buffer, count);
+        double[] purchasingPrice = readDoubles(buffer, count);
+        double[] sellingPrice = readDoubles(buffer, count);
+
+        List<Product> products = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            products.add(new Product(productId[i], readString(buffer), categoryId[i], supplierId[i], quantity[i],
+                    purchasingPrice[i], sellingPrice[i]));
+        }
+        return products;
+    }
+
+    public static ByteBuffer encodeCatalogues(List<Catalogue> catalogues) {
+        int count = catalogues.size();
+        List<byte[]> texts = new ArrayList<>(count * 2);
+        int textLength = 0;
+        int lineCount = 0;
+        for (Catalogue catalogue: catalogues) {
+            byte[] name = catalogue.getName().getBytes(StandardCharsets.UTF_8);
+            byte[] description = catalogue.getDescription().getBytes(StandardCharsets.UTF_8);
+            texts.add(name);
+            texts.add(description);
+            textLength += 8 + name.length + description.length;
+            lineCount += catalogue.getLineCount();
+        }
+
+        ByteBuffer payload = ByteBuffer.allocate(count * 4 * 5 + lineCount * (4 + 8) + textLength);
+        for (Catalogue catalogue: catalogues) {
+            payload.putInt(catalogue.getCatalogueId());
+        }
+        for (Catalogue catalogue: catalogues) {
+            payload.putInt(catalogue.getUserId());
+        }
+        for (Catalogue catalogue: catalogues) {
+            payload.putInt((int) catalogue.getDateStart().toEpochDay());
+        }
+        for (Catalogue catalogue: catalogues) {
+            payload.putInt((int) catalogue.getDateEnd().toEpochDay());
+        }
+        for (Catalogue catalogue: catalogues) {
+            payload.putInt(catalogue.getLineCount());
+        }
+        for (Catalogue catalogue: catalogues) {
+            for (int line = 0; line < catalogue.getLineCount(); line++) {
+                payload.putInt(catalogue.getLineProductId(line));
+            }
+        }
+        for (Catalogue catalogue: catalogues) {
+            for (int line = 0; line < catalogue.getLineCount(); line++) {
+                payload.putDouble(catalogue.getLineDiscount(line));
+            }
+        }
+        for (byte[] text: texts) {
+            payload.putInt(text.length).put(text);
+        }
+        return withHeader(catalogueKind, count, payload);
+    }
+
+    public static List<Catalogue> decodeCatalogues(ByteBuffer buffer) throws IOException {
+        int count = readHeader(buffer, catalogueKind);
+        int[] catalogueId = readInts(buffer, count);
+        int[] userId = readInts(buffer, count);
+        int[] dateStart = readInts(buffer, count);
+        int[] dateEnd = readInts(buffer, count);
+        int[] lineCount = readInts(buffer, count);
+        int totalLineCount = 0;
+        for (int lines: lineCount) {
+            totalLineCount += lines;
+        }
+        int[] productsId = readInts(buffer, totalLineCount);
+        double[] productsDiscount = readDoubles(buffer, totalLineCount);
+
+        List<Catalogue> catalogues = new ArrayList<>(count);
+        int line = 0;
+        for (int i = 0; i < count; i++) {
+            int[] productId = Arrays.copyOfRange(productsId, line, line + lineCount[i]);
+            double[] productDiscount = Arrays.copyOfRange(productsDiscount, line, line + lineCount[i]);
+            line += lineCount[i];
+            String name = readString(buffer);
+            String description = readString(buffer);
+            catalogues.add(new Catalogue(catalogueId[i], name, userId[i], productId, productDiscount,
+                    LocalDate.ofEpochDay(dateStart[i]), LocalDate.ofEpochDay(dateEnd[i]), description));
+        }
+        return catalogues;
+    }
+
+    private static ByteBuffer withHeader(short kind, int count, ByteBuffer payload) {
+        payload.flip();
+        CRC32 checksum = new CRC32();
+        checksum.update(payload.duplicate());
+
+        ByteBuffer buffer = ByteBuffer.allocate(headerLength + payload.remaining());
+        buffer.putInt(magic).putShort(version).putShort(kind).putInt(count).putInt(payload.remaining())
+                .putLong(checksum.getValue());
+        buffer.put(payload);
+        buffer.flip();
+        return buffer;
+    }
+
+    private static int readHeader(ByteBuffer buffer, short kind) throws IOException {
+        if (buffer.remaining() < headerLength || buffer.getInt() != magic) {
+            throw new IOException("Not a binary snapshot");
+        }
+        short fileVersion = buffer.getShort();
+        if (fileVersion != version) {
+            throw new IOException("Unsupported binary snapshot version " + fileVersion);
+        }
+        if (buffer.getShort() != kind) {
+            throw new IOException("Binary snapshot holds a different record kind");
+        }
+        int count = buffer.getInt();
+        int payloadLength = buffer.getInt();
+        long expectedChecksum = buffer.getLong();
+        if (buffer.remaining() != payloadLength) {
+            throw new IOException("Binary snapshot is truncated");
+        }
+        CRC32 checksum = new CRC32();
+        checksum.update(buffer.duplicate());
+        if (checksum.getValue() != expectedChecksum) {
+            throw new IOException("Binary snapshot checksum mismatch");
+        }
+        return count;
+    }
+
+    private static int[] readInts(ByteBuffer buffer, int count) {
+        int[] values = new int[count];
+        buffer.asIntBuffer().get(values);
+        buffer.position(buffer.position() + count * 4);
+        return values;
+    }
+
+    private static double[] readDoubles(ByteBuffer buffer, int count) {
+        double[] values = new double[count];
+        buffer.asDoubleBuffer().get(values);
+        buffer.position(buffer.position() + count * 8);
+        return values;
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        String value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+
+    public static ByteBuffer read(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate((int) channel.size());
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                // Large sequential reads until the buffer is full
+            }
+            buffer.flip();
+            return buffer;
+        }
+    }
+
+    public static List<Product> readProducts() throws IOException {
+        return decodeProducts(read(productBinaryFile));
+    }
+
+    public static List<Catalogue> readCatalogues() throws IOException {
+        return decodeCatalogues(read(catalogueBinaryFile));
+    }
+
+    // Converts between the text and binary formats while the application is not running:
+    // - toBinary: Product.txt and Catalogue.txt are encoded into Product.bin and Catalogue.bin, which are then used
+    // - toText:   the .bin files are decoded back into Product.txt and Catalogue.txt and removed, so text is used again
+    public static void main(String[] args) throws IOException, ParseException {
+        if (args.length == 1 && args[0].equals("toBinary")) {
+            List<Product> products = RecordCodec.readMapped(IOWriterReader.productFile, IOWriterReader::parseProduct);
+            List<Catalogue> catalogues = RecordCodec.readMapped(IOWriterReader.catalogueFile, IOWriterReader::parseCatalogue);
+            SnapshotWriter.writeAtomically(productBinaryFile, encodeProducts(products));
+            SnapshotWriter.writeAtomically(catalogueBinaryFile, encodeCatalogues(catalogues));
+            System.out.println("Converted " + products.size() + " products and " + catalogues.size() + " catalogues to binary");
+        } else if (args.length == 1 && args[0].equals("toText")) {
+            List<Product> products = readProducts();
+            List<Catalogue> catalogues = readCatalogues();
+            SnapshotWriter.writeAtomically(IOWriterReader.productFile, products);
+            SnapshotWriter.writeAtomically(IOWriterReader.catalogueFile, catalogues);
+            Files.delete(productBinaryFile.toPath());
+            Files.delete(catalogueBinaryFile.toPath());
+            System.out.println("Converted " + products.size() + " products and " + catalogues.size() + " catalogues to text");
+        } else {
+            System.out.println("Usage: BinarySnapshot toBinary|toText");
+        }
+    }
+}
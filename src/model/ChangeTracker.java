@@ -0,0 +1,158 @@
+package model;
+
+import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableList;
+import model.objects.*;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+public class ChangeTracker {
+    // Kinds changed since the last snapshot ("Product", "Catalogue", ..., "ID"), so the snapshot writer can skip
+    // untouched files. A log kind is only listed here when its file has to be rewritten rather than appended to.
+    private static final Set<String> dirty = new HashSet<>();
+    // Number of records of each log that are already in its file, the rest is appended on the next snapshot
+    private static final Map<String, Integer> persistedLogCount = new HashMap<>();
+    // Every change counted since startup, used to checkpoint after a number of edits
+    private static long mutationCount;
+
+    // Called once the snapshot files are loaded, before the journal is replayed on top of them
+    public static void start() {
+        track(Product.products, "Product");
+        track(Catalogue.catalogues, "Catalogue");
+        track(Category.categories, "Category");
+        track(Supplier.suppliers, "Supplier");
+        track(User.users, "User");
+        trackLog(Log.loginLogs, "LoginLog");
+        trackLog(Log.productLogs, "ProductLog");
+        trackLog(Log.catalogueLogs, "CatalogueLog");
+        trackLog(Log.supplierLogs, "SupplierLog");
+    }
+
+    private static <T> void track(ObservableList<T> list, String kind) {
+        list.addListener((ListChangeListener<T>) change -> {
+            while (change.next()) {
+                // Sorting a table only reorders the list
+                if (!change.wasPermutated()) {
+                    markDirty(kind);
+                }
+            }
+        });
+    }
+
+    private static void trackLog(ObservableList<Log> list, String kind) {
+        synchronized (dirty) {
+            persistedLogCount.put(kind, list.size());
+        }
+        list.addListener((ListChangeListener<Log>) change -> {
+            while (change.next()) {
+                // Anything but an append past the persisted records changes what is already in the file
+                if (change.wasPermutated() || change.wasRemoved() || change.getFrom() < persistedCount(kind)) {
+                    markDirty(kind);
+                } else {
+                    synchronized (dirty) {
+                        mutationCount++;
+                    }
+                }
+            }
+        });
+    }
+
+    // Called by the entity setters
+    public static void update(Object entity) {
+        markDirty(kindOf(entity));
+        SearchIndex.refresh(entity);
+        FuzzyIndex.refresh(entity);
+        RangeIndex.refresh(entity);
+        Journal.update(entity);
+    }
+
+    public static void delete(Object entity) {
+        markDirty(kindOf(entity));
+        Journal.delete(entity);
+    }
+
+    static void recordId(String kind, int id) {
+        markDirty("ID");
+        Journal.recordId(kind, id);
+    }
+
+    static void markDirty(String kind) {
+        synchronized (dirty) {
+            dirty.add(kind);
+            mutationCount++;
+        }
+    }
+
+    public static long getMutationCount() {
+        synchronized (dirty) {
+            return mutationCount;
+        }
+    }
+
+    private static int persistedCount(String kind) {
+        synchronized (dirty) {
+            return persistedLogCount.getOrDefault(kind, 0);
+        }
+    }
+
+    public static boolean hasChanges() {
+        synchronized (dirty) {
+            return !dirty.isEmpty()
+                    || Log.loginLogs.size() > persistedLogCount.getOrDefault("LoginLog", 0)
+                    || Log.productLogs.size() > persistedLogCount.getOrDefault("ProductLog", 0)
+                    || Log.catalogueLogs.size() > persistedLogCount.getOrDefault("CatalogueLog", 0)
+                    || Log.supplierLogs.size() > persistedLogCount.getOrDefault("SupplierLog", 0);
+        }
+    }
+
+    // Returns the kinds changed since the last call, the caller is then responsible for persisting them
+    static Set<String> takeDirty() {
+        synchronized (dirty) {
+            Set<String> taken = new HashSet<>(dirty);
+            dirty.clear();
+            return taken;
+        }
+    }
+
+    // Returns how many records of the log were already persisted, and remembers the given size as persisted from now on
+    static int takePersistedCount(String kind, int size) {
+        synchronized (dirty) {
+            Integer persisted = persistedLogCount.put(kind, size);
+            return persisted == null ? 0 : persisted;
+        }
+    }
+
+    // After a failed snapshot nothing can be assumed about the files, so everything is written in full next time
+    static void markAllDirty() {
+        synchronized (dirty) {
+            dirty.add("Product");
+            dirty.add("Catalogue");
+            dirty.add("Category");
+            dirty.add("Supplier");
+            dirty.add("User");
+            dirty.add("LoginLog");
+            dirty.add("ProductLog");
+            dirty.add("CatalogueLog");
+            dirty.add("SupplierLog");
+            dirty.add("ID");
+        }
+    }
+
+    private static String kindOf(Object entity) {
+        if (entity instanceof Product) {
+            return "Product";
+        } else if (entity instanceof Catalogue) {
+            return "Catalogue";
+        } else if (entity instanceof Category) {
+            return "Category";
+        } else if (entity instanceof Supplier) {
+            return "Supplier";
+        } else if (entity instanceof User) {
+            return "User";
+        }
+        throw new IllegalArgumentException(entity.getClass().getName());
+    }
+}
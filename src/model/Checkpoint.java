@@ -0,0 +1,117 @@
+package model;
+
+import javafx.application.Platform;
+import javafx.beans.property.ReadOnlyStringProperty;
+import javafx.beans.property.ReadOnlyStringWrapper;
+
+import java.io.IOException;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+public class Checkpoint {
+    // Writes the changed data to the snapshot files in the background, so a crash loses at most what the
+    // journal has not flushed yet and the journal never grows for a whole day.
+    // Both triggers can be set on the command line, e.g. -Dcheckpoint.interval=120 -Dcheckpoint.mutations=200
+    private static final long intervalSeconds = Long.getLong("checkpoint.interval", 300);
+    private static final long mutationThreshold = Long.getLong("checkpoint.mutations", 500);
+    private static final long pollMillis = 1000;
+
+    private static final ReadOnlyStringWrapper status = new ReadOnlyStringWrapper("Not saved yet");
+    private static final DateTimeFormatter timeFormatter = DateTimeFormatter.ofPattern("HH:mm:ss");
+
+    private static ScheduledExecutorService scheduler;
+    private static volatile boolean running;
+    private static volatile boolean stopped;
+    private static long lastCheckpointNanos;
+    private static long lastCheckpointMutations;
+
+    public static void start() {
+        lastCheckpointNanos = System.nanoTime();
+        lastCheckpointMutations = ChangeTracker.getMutationCount();
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "checkpoint");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(Checkpoint::poll, pollMillis, pollMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private static void poll() {
+        if (running || stopped) {
+            return;
+        }
+        long mutations = ChangeTracker.getMutationCount() - lastCheckpointMutations;
+        boolean intervalElapsed = System.nanoTime() - lastCheckpointNanos >= TimeUnit.SECONDS.toNanos(intervalSeconds);
+        if (mutations >= mutationThreshold || (intervalElapsed && ChangeTracker.hasChanges())) {
+            running = true;
+            Platform.runLater(Checkpoint::capture);
+        }
+    }
+
+    // Runs on the FX thread: copying the lists is cheap, the file writes happen on the checkpoint thread
+    private static void capture() {
+        if (stopped) {
+            running = false;
+            return;
+        }
+        long start = System.nanoTime();
+        SnapshotWriter.Snapshot snapshot;
+        try {
+            snapshot = SnapshotWriter.capture();
+            Journal.rotate();
+        } catch (IOException e) {
+            e.printStackTrace();
+            ChangeTracker.markAllDirty();
+            running = false;
+            return;
+        }
+        lastCheckpointNanos = start;
+        lastCheckpointMutations = ChangeTracker.getMutationCount();
+        scheduler.execute(() -> write(snapshot, start));
+    }
+
+    private static void write(SnapshotWriter.Snapshot snapshot, long start) {
+        try {
+            snapshot.write();
+            Journal.checkpointed();
+            long duration = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            String time = LocalTime.now().format(timeFormatter);
+            Platform.runLater(() -> {
+                try {
+                    snapshot.saved();
+                } catch (IOException e) {
+                    // The logs stay in memory until the next checkpoint
+                    e.printStackTrace();
+                }
+                status.set("Saved " + time + "\n" + duration + " ms");
+            });
+        } catch (IOException | RuntimeException e) {
+            e.printStackTrace();
+            Platform.runLater(() -> status.set("Save failed"));
+        } finally {
+            running = false;
+        }
+    }
+
+    // Waits for a checkpoint in progress, so onExit() does not race it for the files
+    public static void stop() {
+        stopped = true;
+        if (scheduler == null) {
+            return;
+        }
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Time and duration of the last checkpoint, shown in the navigation bar
+    public static ReadOnlyStringProperty statusProperty() {
+        return status.getReadOnlyProperty();
+    }
+}
@@ -0,0 +1,115 @@
+package model;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+public class Csv {
+    // RFC 4180: fields separated by commas, quoted with '"' when they hold a comma, quote or line break,
+    // and a quote inside a quoted field doubled
+    public static String quote(String field) {
+        if (field == null) {
+            return "";
+        }
+        boolean needsQuotes = false;
+        for (int i = 0; i < field.length() && !needsQuotes; i++) {
+            char character = field.charAt(i);
+            needsQuotes = character == ',' || character == '"' || character == '\n' || character == '\r';
+        }
+        return needsQuotes ? "\"" + field.replace("\"", "\"\"") + "\"" : field;
+    }
+
+    public static String join(List<String> fields) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < fields.size(); i++) {
+            if (i > 0) {
+                builder.append(',');
+            }
+            builder.append(quote(fields.get(i)));
+        }
+        return builder.toString();
+    }
+
+    // Reads one record at a time, so a file of any size is streamed through a fixed buffer
+    public static class RecordReader {
+        private final Reader reader;
+        private final char[] buffer = new char[64 * 1024];
+        private int position;
+        private int limit;
+        private int lineNumber = 1;
+        private int recordLineNumber;
+
+        public RecordReader(Reader reader) {
+            this.reader = reader;
+        }
+
+        // Returns null at the end of the input
+        public List<String> next() throws IOException {
+            int character = read();
+            // Blank lines between records are skipped
+            while (character == '\n' || character == '\r') {
+                character = read();
+            }
+            if (character < 0) {
+                return null;
+            }
+            recordLineNumber = lineNumber;
+
+            List<String> fields = new ArrayList<>();
+            StringBuilder field = new StringBuilder();
+            boolean quoted = false;
+            while (true) {
+                if (quoted) {
+                    if (character < 0) {
+                        break;
+                    } else if (character == '"') {
+                        int following = read();
+                        if (following == '"') {
+                            field.append('"');
+                        } else {
+                            quoted = false;
+                            character = following;
+                            continue;
+                        }
+                    } else {
+                        field.append((char) character);
+                    }
+                } else if (character == '"' && field.length() == 0) {
+                    quoted = true;
+                } else if (character == ',') {
+                    fields.add(field.toString());
+                    field.setLength(0);
+                } else if (character == '\n' || character == '\r' || character < 0) {
+                    break;
+                } else {
+                    field.append((char) character);
+                }
+                character = read();
+            }
+            fields.add(field.toString());
+            return fields;
+        }
+
+        // The line the last record returned by next() started on
+        public int getLineNumber() {
+            return recordLineNumber;
+        }
+
+        private int read() throws IOException {
+            if (position == limit) {
+                limit = reader.read(buffer, 0, buffer.length);
+                position = 0;
+                if (limit <= 0) {
+                    limit = 0;
+                    return -1;
+                }
+            }
+            char character = buffer[position++];
+            if (character == '\n') {
+                lineNumber++;
+            }
+            return character;
+        }
+    }
+}
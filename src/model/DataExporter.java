@@ -0,0 +1,354 @@
+package model;
+
+import model.objects.*;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+public class DataExporter {
+    // Full dumps of products, suppliers or catalogues. The format follows the file name:
+    // ".csv" or ".jsonl" (one JSON object per line), with ".gz" appended for gzip, e.g. "products.jsonl.gz".
+    // Rows are streamed straight from a copy of the list, so memory use does not grow with the output.
+    private static final int bufferSize = 256 * 1024;
+
+    private final String[] columns;
+    private final List<?> entities;
+    private final RowFormatter<Object> formatter;
+
+    private interface RowFormatter<T> {
+        void format(T entity, RowWriter row) throws IOException;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> DataExporter(String[] columns, List<T> entities, RowFormatter<T> formatter) {
+        this.columns = columns;
+        this.entities = entities;
+        this.formatter = (RowFormatter<Object>) formatter;
+    }
+
+    // The capturing methods copy the list and build the name lookups, so call them on the FX thread;
+    // write() can then run on any thread
+    public static DataExporter products() {
+        Map<Integer, String> categoryNames = new HashMap<>();
+        for (Category category: Category.categories) {
+            categoryNames.putIfAbsent(category.getCategoryId(), category.getCategoryName());
+        }
+        Map<Integer, String> supplierNames = new HashMap<>();
+        for (Supplier supplier: Supplier.suppliers) {
+            supplierNames.putIfAbsent(supplier.getSupplierId(), supplier.getName());
+        }
+        String[] columns = {"productId", "name", "categoryId", "category", "supplierId", "supplier", "quantity",
+                "purchasingPrice", "sellingPrice"};
+        return new DataExporter(columns, new ArrayList<>(Product.products), (Product product, RowWriter row) -> {
+            row.value(product.getProductId());
+            row.value(product.getName());
+            row.value(product.getCategoryId());
+            row.value(categoryNames.get(product.getCategoryId()));
+            row.value(product.getSupplierId());
+            row.value(supplierNames.get(product.getSupplierId()));
+            row.value(product.getQuantity());
+            row.value(product.getPurchasingPrice());
+            row.value(product.getSellingPrice());
+        });
+    }
+
+    public static DataExporter suppliers() {
+        String[] columns = {"supplierId", "name", "address", "postCode", "country", "stateOrProvince", "city",
+                "contactNumber", "emailAddress", "status"};
+        return new DataExporter(columns, new ArrayList<>(Supplier.suppliers), (Supplier supplier, RowWriter row) -> {
+            row.value(supplier.getSupplierId());
+            row.value(supplier.getName());
+            row.value(supplier.getAddress());
+            row.value(supplier.getPostCode());
+            row.value(supplier.getCountry());
+            row.value(supplier.getStateOrProvince());
+            row.value(supplier.getCity());
+            row.value(supplier.getContactNumber());
+            row.value(supplier.getEmailAddress());
+            row.value(supplier.getStatus());
+        });
+    }
+
+    public static DataExporter catalogues() {
+        Map<Integer, String> usernames = new HashMap<>();
+        for (User user: User.users) {
+            usernames.putIfAbsent(user.getUserId(), user.getUsername());
+        }
+        String[] columns = {"catalogueId", "name", "userId", "username", "productIds", "productDiscounts",
+                "dateStart", "dateEnd", "description"};
+        return new DataExporter(columns, new ArrayList<>(Catalogue.catalogues), (Catalogue catalogue, RowWriter row) -> {
+            row.value(catalogue.getCatalogueId());
+            row.value(catalogue.getName());
+            row.value(catalogue.getUserId());
+            row.value(usernames.get(catalogue.getUserId()));
+            row.values(catalogue.getProductsId());
+            row.values(catalogue.getProductsDiscount());
+            row.value(catalogue.getDateStart().toString());
+            row.value(catalogue.getDateEnd().toString());
+            row.value(catalogue.getDescription());
+        });
+    }
+
+    // Returns the number of rows written
+    public long write(File file) throws IOException {
+        String name = file.getName().toLowerCase();
+        boolean gzip = name.endsWith(".gz");
+        if (gzip) {
+            name = name.substring(0, name.length() - 3);
+        }
+        boolean json = name.endsWith(".jsonl") || name.endsWith(".json");
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            Writer writer;
+            if (gzip) {
+                OutputStream output = new GZIPOutputStream(Channels.newOutputStream(channel), bufferSize);
+                writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8), bufferSize);
+            } else {
+                writer = new BufferedWriter(Channels.newWriter(channel, StandardCharsets.UTF_8.newEncoder(), -1),
+                        bufferSize);
+            }
+            try (Writer output = writer) {
+                RowWriter row = json ? new JsonRowWriter(output, columns) : new CsvRowWriter(output, columns);
+                row.header();
+                for (Object entity: entities) {
+                    row.begin();
+                    formatter.format(entity, row);
+                    row.end();
+                }
+            }
+        }
+        return entities.size();
+    }
+
+    private static abstract class RowWriter {
+        protected final Writer writer;
+        protected final String[] columns;
+        protected int column;
+
+        private RowWriter(Writer writer, String[] columns) {
+            this.writer = writer;
+            this.columns = columns;
+        }
+
+        void header() throws IOException {
+        }
+
+        void begin() {
+            column = 0;
+        }
+
+        abstract void end() throws IOException;
+
+        abstract void value(String value) throws IOException;
+
+        abstract void value(long value) throws IOException;
+
+        abstract void value(double value) throws IOException;
+
+        abstract void value(boolean value) throws IOException;
+
+        abstract void values(List<? extends Number> values) throws IOException;
+    }
+
+    private static class CsvRowWriter extends RowWriter {
+        private CsvRowWriter(Writer writer, String[] columns) {
+            super(writer, columns);
+        }
+
+        @Override
+        void header() throws IOException {
+            for (int i = 0; i < columns.length; i++) {
+                if (i > 0) {
+                    writer.write(',');
+                }
+                writer.write(columns[i]);
+            }
+            writer.write('\n');
+        }
+
+        private void separator() throws IOException {
+            if (column++ > 0) {
+                writer.write(',');
+            }
+        }
+
+        @Override
+        void end() throws IOException {
+            writer.write('\n');
+        }
+
+        @Override
+        void value(String value) throws IOException {
+            separator();
+            writer.write(Csv.quote(value));
+        }
+
+        @Override
+        void value(long value) throws IOException {
+            separator();
+            writer.write(Long.toString(value));
+        }
+
+        @Override
+        void value(double value) throws IOException {
+            separator();
+            writer.write(Double.toString(value));
+        }
+
+        @Override
+        void value(boolean value) throws IOException {
+            separator();
+            writer.write(value ? "true" : "false");
+        }
+
+        // Lists share one field, separated by ';'
+        @Override
+        void values(List<? extends Number> values) throws IOException {
+            separator();
+            for (int i = 0; i < values.size(); i++) {
+                if (i > 0) {
+                    writer.write(';');
+                }
+                writer.write(values.get(i).toString());
+            }
+        }
+    }
+
+    private static class JsonRowWriter extends RowWriter {
+        private JsonRowWriter(Writer writer, String[] columns) {
+            super(writer, columns);
+        }
+
+        private void name() throws IOException {
+            writer.write(column == 0 ? "{\"" : ",\"");
+            writer.write(columns[column++]);
+            writer.write("\":");
+        }
+
+        @Override
+        void end() throws IOException {
+            writer.write("}\n");
+        }
+
+        @Override
+        void value(String value) throws IOException {
+            name();
+            if (value == null) {
+                writer.write("null");
+                return;
+            }
+            writer.write('"');
+            for (int i = 0; i < value.length(); i++) {
+                char character = value.charAt(i);
+                switch (character) {
+                    case '"':
+                        writer.write("\\\"");
+                        break;
+                    case '\\':
+                        writer.write("\\\\");
+                        break;
+                    case '\n':
+                        writer.write("\\n");
+                        break;
+                    case '\r':
+                        writer.write("\\r");
+                        break;
+                    case '\t':
+                        writer.write("\\t");
+                        break;
+                    default:
+                        if (character < 0x20) {
+                            writer.write(String.format("\\u%04x", (int) character));
+                        } else {
+                            writer.write(character);
+                        }
+                }
+            }
+            writer.write('"');
+        }
+
+        @Override
+        void value(long value) throws IOException {
+            name();
+            writer.write(Long.toString(value));
+        }
+
+        @Override
+        void value(double value) throws IOException {
+            name();
+            writeNumber(value);
+        }
+
+        private void writeNumber(double value) throws IOException {
+            // JSON has no NaN or Infinity
+            writer.write(Double.isNaN(value) || Double.isInfinite(value) ? "null" : Double.toString(value));
+        }
+
+        @Override
+        void value(boolean value) throws IOException {
+            name();
+            writer.write(value ? "true" : "false");
+        }
+
+        @Override
+        void values(List<? extends Number> values) throws IOException {
+            name();
+            writer.write('[');
+            for (int i = 0; i < values.size(); i++) {
+                if (i > 0) {
+                    writer.write(',');
+                }
+                Number value = values.get(i);
+                if (value instanceof Double) {
+                    writeNumber(value.doubleValue());
+                } else {
+                    writer.write(value.toString());
+                }
+            }
+            writer.write(']');
+        }
+    }
+
+    // Exports without the user interface, e.g. "DataExporter products products.csv.gz"
+    public static void main(String[] args) throws IOException, ParseException {
+        if (args.length != 2) {
+            System.out.println("Usage: DataExporter products|suppliers|catalogues <file>.csv|.jsonl[.gz]");
+            return;
+        }
+        IOWriterReader.onStartup();
+        Journal.close();
+        DataExporter exporter;
+        switch (args[0]) {
+            case "products":
+                exporter = products();
+                break;
+            case "suppliers":
+                exporter = suppliers();
+                break;
+            case "catalogues":
+                exporter = catalogues();
+                break;
+            default:
+                System.out.println("Unknown export: " + args[0]);
+                return;
+        }
+        long start = System.nanoTime();
+        long rows = exporter.write(new File(args[1]));
+        System.out.println("Exported " + rows + " " + args[0] + " in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+    }
+}
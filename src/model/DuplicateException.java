@@ -3,8 +3,14 @@ package model;
 public class DuplicateException extends Exception {
     // Exception to signify:
     // - duplicate values inserted into the tableview in CatalogueController
-    // - duplicate records with the same name/username
+    // - duplicate records with the same name/username/email address
     public DuplicateException() {
         super();
     }
+
+    public static class EmailAddress extends DuplicateException {
+        public EmailAddress() {
+            super();
+        }
+    }
 }
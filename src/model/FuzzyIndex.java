@@ -0,0 +1,256 @@
+package model;
+
+import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableList;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Function;
+
+public class FuzzyIndex<T> {
+    // Typo-tolerant search over one field (product names, supplier names), ranked by edit distance.
+    // Values are kept in a BK-tree: each child of a node sits at a known edit distance from the node's value, so by
+    // the triangle inequality a query within distance k of some value only needs the children at distance d - k to
+    // d + k from each node it visits, where d is the query's distance to that node. Values are compared after
+    // UniqueIndex.normalise(); the allowed distance grows with the length of the query.
+    // Like SearchIndex, an index is created on the FX thread, built by its first search and then kept current by a
+    // list listener and ChangeTracker.update. A removed value stays in the tree as a node without entities until
+    // the tree is rebuilt.
+    private static final int rebuildThreshold = 16;
+    private static final Map<ObservableList<?>, Map<String, FuzzyIndex<?>>> indexes = new IdentityHashMap<>();
+    private static final List<FuzzyIndex<?>> allIndexes = new CopyOnWriteArrayList<>();
+
+    private final ObservableList<T> list;
+    private final Function<T, String> valueOf;
+    private Node<T> root;
+    private final Map<T, Node<T>> nodesByEntity = new IdentityHashMap<>();
+    private int nodeCount;
+    private int emptyNodeCount;
+    // Rows waiting to be indexed by the first search
+    private List<T> unindexedRows;
+    // Reused by distance(); only touched under the index lock
+    private int[] previousRow = new int[32];
+    private int[] currentRow = new int[32];
+
+    private static class Node<T> {
+        private final String key;
+        private final List<T> entities = new ArrayList<>(1);
+        private int[] childDistances = new int[0];
+        private List<Node<T>> children = new ArrayList<>(0);
+
+        private Node(String key) {
+            this.key = key;
+        }
+
+        private Node<T> child(int distance) {
+            for (int i = 0; i < childDistances.length; i++) {
+                if (childDistances[i] == distance) {
+                    return children.get(i);
+                }
+            }
+            return null;
+        }
+
+        private void addChild(int distance, Node<T> child) {
+            childDistances = Arrays.copyOf(childDistances, childDistances.length + 1);
+            childDistances[childDistances.length - 1] = distance;
+            children.add(child);
+        }
+    }
+
+    private FuzzyIndex(ObservableList<T> list, Function<T, String> valueOf) {
+        this.list = list;
+        this.valueOf = valueOf;
+        this.unindexedRows = new ArrayList<>(list);
+        list.addListener(this::onChanged);
+    }
+
+    // One index per list and field name; call on the FX thread
+    @SuppressWarnings("unchecked")
+    public static <T> FuzzyIndex<T> forField(ObservableList<T> list, String field, Function<T, String> valueOf) {
+        synchronized (indexes) {
+            Map<String, FuzzyIndex<?>> fields = indexes.computeIfAbsent(list, ignored -> new HashMap<>());
+            FuzzyIndex<T> index = (FuzzyIndex<T>) fields.get(field);
+            if (index == null) {
+                index = new FuzzyIndex<>(list, valueOf);
+                fields.put(field, index);
+                allIndexes.add(index);
+            }
+            return index;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public static void refresh(Object entity) {
+        for (FuzzyIndex<?> index: allIndexes) {
+            ((FuzzyIndex<Object>) index).refreshEntity(entity);
+        }
+    }
+
+    // For SearchExecutor: takes the text now and searches when called
+    public Callable<List<T>> query(String text) {
+        return () -> search(text);
+    }
+
+    // Up to 1 typo for short queries, 2 from 8 characters and 3 from 12
+    public static int maxDistance(String text) {
+        return Math.max(1, Math.min(3, text.length() / 4));
+    }
+
+    // Entities whose value is within maxDistance(text) edits of the text, closest first
+    public synchronized List<T> search(String text) {
+        if (unindexedRows != null) {
+            rebuild(unindexedRows);
+            unindexedRows = null;
+        }
+        String query = UniqueIndex.normalise(text);
+        int maxDistance = maxDistance(query);
+        List<List<Node<T>>> nodesByDistance = new ArrayList<>();
+        for (int i = 0; i <= maxDistance; i++) {
+            nodesByDistance.add(new ArrayList<>());
+        }
+
+        Deque<Node<T>> pending = new ArrayDeque<>();
+        if (root != null) {
+            pending.push(root);
+        }
+        while (!pending.isEmpty()) {
+            Node<T> node = pending.pop();
+            int distance = distance(query, node.key);
+            if (distance <= maxDistance && !node.entities.isEmpty()) {
+                nodesByDistance.get(distance).add(node);
+            }
+            for (int i = 0; i < node.childDistances.length; i++) {
+                if (Math.abs(node.childDistances[i] - distance) <= maxDistance) {
+                    pending.push(node.children.get(i));
+                }
+            }
+        }
+
+        List<T> results = new ArrayList<>();
+        for (List<Node<T>> nodes: nodesByDistance) {
+            nodes.sort((first, second) -> first.key.compareTo(second.key));
+            for (Node<T> node: nodes) {
+                results.addAll(node.entities);
+            }
+        }
+        return results;
+    }
+
+    private synchronized void onChanged(ListChangeListener.Change<? extends T> change) {
+        if (unindexedRows != null) {
+            unindexedRows = new ArrayList<>(list);
+            return;
+        }
+        while (change.next()) {
+            if (change.wasPermutated()) {
+                continue;
+            }
+            if (change.getRemovedSize() > rebuildThreshold) {
+                rebuild(list);
+                return;
+            }
+            for (T removed: change.getRemoved()) {
+                remove(removed);
+            }
+            for (T added: change.getAddedSubList()) {
+                add(added);
+            }
+        }
+        if (emptyNodeCount > 64 && emptyNodeCount > nodeCount / 2) {
+            rebuild(list);
+        }
+    }
+
+    private synchronized void refreshEntity(T entity) {
+        Node<T> node = nodesByEntity.get(entity);
+        if (node != null && !node.key.equals(UniqueIndex.normalise(valueOf.apply(entity)))) {
+            remove(entity);
+            add(entity);
+        }
+    }
+
+    private void rebuild(List<T> entities) {
+        root = null;
+        nodesByEntity.clear();
+        nodeCount = 0;
+        emptyNodeCount = 0;
+        for (T entity: entities) {
+            add(entity);
+        }
+    }
+
+    private void add(T entity) {
+        String value = valueOf.apply(entity);
+        if (value == null) {
+            return;
+        }
+        String key = UniqueIndex.normalise(value);
+        boolean created = false;
+        Node<T> node = root;
+        if (node == null) {
+            root = node = new Node<>(key);
+            nodeCount++;
+            created = true;
+        }
+        while (!node.key.equals(key)) {
+            int distance = distance(key, node.key);
+            Node<T> child = node.child(distance);
+            if (child == null) {
+                child = new Node<>(key);
+                node.addChild(distance, child);
+                nodeCount++;
+                created = true;
+            }
+            node = child;
+        }
+        if (!created && node.entities.isEmpty()) {
+            emptyNodeCount--;
+        }
+        node.entities.add(entity);
+        nodesByEntity.put(entity, node);
+    }
+
+    private void remove(T entity) {
+        Node<T> node = nodesByEntity.remove(entity);
+        if (node == null) {
+            return;
+        }
+        node.entities.remove(entity);
+        if (node.entities.isEmpty()) {
+            emptyNodeCount++;
+        }
+    }
+
+    // Levenshtein distance with two reused rows
+    private int distance(String first, String second) {
+        int length = second.length();
+        if (previousRow.length <= length) {
+            previousRow = new int[length + 1];
+            currentRow = new int[length + 1];
+        }
+        for (int j = 0; j <= length; j++) {
+            previousRow[j] = j;
+        }
+        for (int i = 1; i <= first.length(); i++) {
+            currentRow[0] = i;
+            char character = first.charAt(i - 1);
+            for (int j = 1; j <= length; j++) {
+                int substitution = previousRow[j - 1] + (character == second.charAt(j - 1) ? 0 : 1);
+                currentRow[j] = Math.min(substitution, Math.min(previousRow[j], currentRow[j - 1]) + 1);
+            }
+            int[] row = previousRow;
+            previousRow = currentRow;
+            currentRow = row;
+        }
+        return previousRow[length];
+    }
+}
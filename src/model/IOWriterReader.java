@@ -6,6 +6,7 @@ import java.io.*;
 import java.text.ParseException;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Date;
 import java.util.List;
 
 public class IOWriterReader {
@@ -32,205 +33,214 @@ public class IOWriterReader {
 
     public static void onStartup() throws IOException, ParseException {
         // Read ID
-        BufferedReader reader = new BufferedReader(new FileReader(idFile));
-        productId = Integer.parseInt(reader.readLine());
-        catalogueId = Integer.parseInt(reader.readLine());
-        categoryId = Integer.parseInt(reader.readLine());
-        supplierId = Integer.parseInt(reader.readLine());
-        userId = Integer.parseInt(reader.readLine());
-
-        String lineString;
-
-        // Read data
-        reader = new BufferedReader(new FileReader(productFile));
-        while ((lineString = reader.readLine()) != null) {
-            String[] productArray = lineString.split("\\|");
-            Product.products.add(new Product(Integer.parseInt(productArray[0]), productArray[1], Integer.parseInt(productArray[2]),
-                    Integer.parseInt(productArray[3]), Integer.parseInt(productArray[4]),
-                    Double.parseDouble(productArray[5]), Double.parseDouble(productArray[6])));
+        try (BufferedReader reader = new BufferedReader(new FileReader(idFile))) {
+            productId = Integer.parseInt(reader.readLine());
+            catalogueId = Integer.parseInt(reader.readLine());
+            categoryId = Integer.parseInt(reader.readLine());
+            supplierId = Integer.parseInt(reader.readLine());
+            userId = Integer.parseInt(reader.readLine());
         }
 
-        reader = new BufferedReader(new FileReader(catalogueFile));
-        while ((lineString = reader.readLine()) != null) {
-            String[] catalogueArray = lineString.split("\\|");
+        // Rewrite log files still in the old timestamp format, once
+        LogMigrator.migrate();
 
-            List<Integer> productId = new ArrayList<>();
-            for (String product: catalogueArray[3].split("<>")) {
-                productId.add(Integer.parseInt(product));
-            }
+        // Read data and logs, each file on its own thread
+        SnapshotLoader.load();
 
-            List<Double> productDiscount = new ArrayList<>();
-            for (String discount: catalogueArray[4].split("<>")) {
-                productDiscount.add(Double.parseDouble(discount));
-            }
-
-            Catalogue.catalogues.add(new Catalogue(Integer.parseInt(catalogueArray[0]), catalogueArray[1],
-                    Integer.parseInt(catalogueArray[2]), productId, productDiscount, LocalDate.parse(catalogueArray[5]),
-                    LocalDate.parse(catalogueArray[6]), catalogueArray[7]));
-        }
+        // Track what differs from the files from here on, including whatever the journal brings in
+        ChangeTracker.start();
 
-        reader = new BufferedReader(new FileReader(categoryFile));
-        while ((lineString = reader.readLine()) != null) {
-            String[] categoryArray = lineString.split("\\|");
-            Category.categories.add(new Category(Integer.parseInt(categoryArray[0]), categoryArray[1]));
-        }
-
-        reader = new BufferedReader(new FileReader(supplierFile));
-        while ((lineString = reader.readLine()) != null) {
-            String[] logArray = lineString.split("\\|");
-            Supplier.suppliers.add(new Supplier(Integer.parseInt(logArray[0]), logArray[1], logArray[2],
-                    logArray[3], logArray[4], logArray[5], logArray[6], logArray[7],
-                    logArray[8], Boolean.valueOf(logArray[9])));
-        }
-
-        reader = new BufferedReader(new FileReader(userFile));
-        while ((lineString = reader.readLine()) != null) {
-            String[] userArray = lineString.split("\\|");
-            if (userArray[3].equals("Product Manager")) {
-                User.users.add(new Product_Manager(Integer.parseInt(userArray[0]), userArray[1], userArray[2],
-                        userArray[4], userArray[5], userArray[6], userArray[7], Boolean.valueOf(userArray[8])));
-            } else {
-                User.users.add(new Administrator(Integer.parseInt(userArray[0]), userArray[1], userArray[2],
-                        userArray[4], userArray[5], userArray[6], userArray[7], Boolean.valueOf(userArray[8])));
-            }
-        }
+        // Apply the operations journaled since the last snapshot, then start journaling new ones
+        Journal.replay();
+        Journal.open();
+    }
 
-        // Read logs
-        reader = new BufferedReader(new FileReader(loginLog));
-        while ((lineString = reader.readLine()) != null) {
-            String[] logArray = lineString.split("\\|");
-            Log.loginLogs.add(new Log(logArray[0], logArray[1], logArray[2]));
-        }
+    public static Product parseProduct(String lineString) {
+        return parseProduct(RecordCodec.cursor(lineString));
+    }
 
-        reader = new BufferedReader(new FileReader(productLog));
-        while ((lineString = reader.readLine()) != null) {
-            String[] logArray = lineString.split("\\|");
-            Log.productLogs.add(new Log(logArray[0], logArray[1], logArray[2]));
-        }
+    public static Product parseProduct(RecordCodec.Cursor cursor) {
+        int productId = cursor.nextInt();
+        String name = cursor.nextText();
+        int categoryId = cursor.nextInt();
+        int supplierId = cursor.nextInt();
+        int quantity = cursor.nextInt();
+        double purchasingPrice = cursor.nextDouble();
+        double sellingPrice = cursor.nextDouble();
+        cursor.skipField(); // Profit margin is derived from the prices
+        return new Product(productId, name, categoryId, supplierId, quantity, purchasingPrice, sellingPrice);
+    }
 
-        reader = new BufferedReader(new FileReader(catalogueLog));
-        while ((lineString = reader.readLine()) != null) {
-            String[] logArray = lineString.split("\\|");
-            Log.catalogueLogs.add(new Log(logArray[0], logArray[1], logArray[2]));
-        }
+    public static Catalogue parseCatalogue(String lineString) {
+        return parseCatalogue(RecordCodec.cursor(lineString));
+    }
 
-        reader = new BufferedReader(new FileReader(supplierLog));
-        while ((lineString = reader.readLine()) != null) {
-            String[] logArray = lineString.split("\\|");
-            Log.supplierLogs.add(new Log(logArray[0], logArray[1], logArray[2]));
-        }
+    public static Catalogue parseCatalogue(RecordCodec.Cursor cursor) {
+        int catalogueId = cursor.nextInt();
+        String name = cursor.nextText();
+        int userId = cursor.nextInt();
+        int[] productId = cursor.nextIntArray();
+        double[] productDiscount = cursor.nextDoubleArray();
+        LocalDate dateStart = LocalDate.parse(cursor.nextText());
+        LocalDate dateEnd = LocalDate.parse(cursor.nextText());
+        String description = cursor.nextText();
+        return new Catalogue(catalogueId, name, userId, productId, productDiscount, dateStart, dateEnd, description);
+    }
 
-        reader.close();
+    public static Category parseCategory(String lineString) throws IOException {
+        return parseCategory(RecordCodec.cursor(lineString));
     }
 
-    public static void onExit() throws IOException {
-        // Write ID
-        BufferedWriter writer = new BufferedWriter(new FileWriter(idFile));
-        writer.write(String.valueOf(productId));
-        writer.newLine();
-        writer.write(String.valueOf(catalogueId));
-        writer.newLine();
-        writer.write(String.valueOf(categoryId));
-        writer.newLine();
-        writer.write(String.valueOf(supplierId));
-        writer.newLine();
-        writer.write(String.valueOf(userId));
-        writer.newLine();
-        writer.flush();
+    public static Category parseCategory(RecordCodec.Cursor cursor) throws IOException {
+        int categoryId = cursor.nextInt();
+        return new Category(categoryId, cursor.nextText());
+    }
 
-        // Write data
-        writer = new BufferedWriter(new FileWriter(productFile));
-        for (Product product: Product.products) {
-            writer.write(product.toString());
-            writer.newLine();
-        }
-        writer.flush();
+    public static Supplier parseSupplier(String lineString) {
+        return parseSupplier(RecordCodec.cursor(lineString));
+    }
 
-        writer = new BufferedWriter(new FileWriter(catalogueFile));
-        for (Catalogue catalogue: Catalogue.catalogues) {
-            writer.write(catalogue.toString());
-            writer.newLine();
-        }
-        writer.flush();
+    public static Supplier parseSupplier(RecordCodec.Cursor cursor) {
+        int supplierId = cursor.nextInt();
+        String name = cursor.nextText();
+        String address = cursor.nextText();
+        String postCode = cursor.nextText();
+        String country = cursor.nextText();
+        String stateOrProvince = cursor.nextText();
+        String city = cursor.nextText();
+        String contactNumber = cursor.nextText();
+        String emailAddress = cursor.nextText();
+        boolean status = cursor.nextBoolean();
+        return new Supplier(supplierId, name, address, postCode, country, stateOrProvince, city, contactNumber,
+                emailAddress, status);
+    }
 
-        writer = new BufferedWriter(new FileWriter(categoryFile));
-        for (Category category: Category.categories) {
-            writer.write(category.toString());
-            writer.newLine();
-        }
-        writer.flush();
+    public static User parseUser(String lineString) {
+        return parseUser(RecordCodec.cursor(lineString));
+    }
 
-        writer = new BufferedWriter(new FileWriter(supplierFile));
-        for (Supplier supplier: Supplier.suppliers) {
-            writer.write(supplier.toString());
-            writer.newLine();
+    public static User parseUser(RecordCodec.Cursor cursor) {
+        int userId = cursor.nextInt();
+        String username = cursor.nextText();
+        String password = cursor.nextText();
+        String role = cursor.nextText();
+        String name = cursor.nextText();
+        String address = cursor.nextText();
+        String contactNumber = cursor.nextText();
+        String emailAddress = cursor.nextText();
+        boolean status = cursor.nextBoolean();
+        if (role.equals("Product Manager")) {
+            return new Product_Manager(userId, username, password, name, address, contactNumber, emailAddress, status);
+        } else {
+            return new Administrator(userId, username, password, name, address, contactNumber, emailAddress, status);
         }
-        writer.flush();
+    }
 
-        writer = new BufferedWriter(new FileWriter(userFile));
-        for (User user: User.users) {
-            writer.write(user.toString());
-            writer.newLine();
-        }
-        writer.flush();
+    public static Log parseLog(String lineString) throws ParseException {
+        return parseLog(RecordCodec.cursor(lineString));
+    }
 
-        // Write logs
-        writer = new BufferedWriter(new FileWriter(loginLog));
-        for (Log log: Log.loginLogs) {
-            writer.write(log.toString());
-            writer.newLine();
+    // Reads both the ISO timestamps written now and the Date.toString() ones of older files
+    public static Log parseLog(RecordCodec.Cursor cursor) throws ParseException {
+        Date timestamp;
+        if (cursor.atInstant()) {
+            timestamp = new Date(cursor.nextInstant());
+        } else {
+            timestamp = Log.parseLegacyTimestamp(cursor.nextText());
         }
-        writer.flush();
+        String action = cursor.nextText();
+        return new Log(timestamp, action, cursor.nextInt());
+    }
 
-        writer = new BufferedWriter(new FileWriter(productLog));
-        for (Log log: Log.productLogs) {
-            writer.write(log.toString());
-            writer.newLine();
-        }
-        writer.flush();
+    public static void onExit() throws IOException {
+        // Let a background checkpoint finish, then flush the journal; the snapshot is only written here once
+        // the journal has grown large enough
+        Checkpoint.stop();
+        Journal.close();
+        try {
+            if (!Journal.needsCompaction()) {
+                return;
+            }
 
-        writer = new BufferedWriter(new FileWriter(catalogueLog));
-        for (Log log: Log.catalogueLogs) {
-            writer.write(log.toString());
-            writer.newLine();
-        }
-        writer.flush();
+            // Only the files that changed since the last snapshot are written, each to a temporary copy first
+            // so a crash never leaves a half-written data file
+            SnapshotWriter.write();
 
-        writer = new BufferedWriter(new FileWriter(supplierLog));
-        for (Log log: Log.supplierLogs) {
-            writer.write(log.toString());
-            writer.newLine();
+            // Everything in the journal is now part of the snapshot
+            Journal.reset();
+        } finally {
+            KeyValueRepository.closeAll();
         }
-        writer.flush();
-
-        writer.close();
     }
 
     public static int getProductId() {
         productId++;
+        ChangeTracker.recordId("Product", productId);
         return productId;
     }
 
+    // Hands out count consecutive product IDs with a single journal record, returns the first
+    public static int getProductIds(int count) {
+        int firstProductId = productId + 1;
+        productId += count;
+        ChangeTracker.recordId("Product", productId);
+        return firstProductId;
+    }
+
     public static int getCatalogueId() {
         catalogueId++;
+        ChangeTracker.recordId("Catalogue", catalogueId);
         return catalogueId;
     }
 
     public static int getCategoryId() {
         categoryId++;
+        ChangeTracker.recordId("Category", categoryId);
         return categoryId;
     }
 
     public static int getSupplierId() {
         supplierId++;
+        ChangeTracker.recordId("Supplier", supplierId);
         return supplierId;
     }
 
     public static int getUserId() {
         userId++;
+        ChangeTracker.recordId("User", userId);
         return userId;
     }
 
+    static List<String> idRecords() {
+        List<String> idRecords = new ArrayList<>();
+        idRecords.add(String.valueOf(productId));
+        idRecords.add(String.valueOf(catalogueId));
+        idRecords.add(String.valueOf(categoryId));
+        idRecords.add(String.valueOf(supplierId));
+        idRecords.add(String.valueOf(userId));
+        return idRecords;
+    }
+
+    static void restoreId(String kind, int id) {
+        switch (kind) {
+            case "Product":
+                productId = Math.max(productId, id);
+                break;
+            case "Catalogue":
+                catalogueId = Math.max(catalogueId, id);
+                break;
+            case "Category":
+                categoryId = Math.max(categoryId, id);
+                break;
+            case "Supplier":
+                supplierId = Math.max(supplierId, id);
+                break;
+            case "User":
+                userId = Math.max(userId, id);
+                break;
+        }
+    }
+
     /*public static int generateId(File file) throws IOException {
         BufferedReader reader = new BufferedReader(new FileReader(file));
         int currentIdCount = Integer.parseInt(reader.readLine());
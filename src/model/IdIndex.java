@@ -0,0 +1,197 @@
+package model;
+
+import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableList;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.ToIntFunction;
+
+public class IdIndex<T> {
+    // Finds an entity by ID without scanning its list. Keys are kept as plain ints in an open-addressing table
+    // (linear probing, removal shifts entries back instead of leaving tombstones) and the table follows the list
+    // through a change listener. Where two entities share an ID, the one indexed first is returned; after loading
+    // that is the first in the list, as with list.filtered(...).get(0). The others sharing the ID are chained to its
+    // slot in the order they were indexed, so removing or rekeying one costs the number of entities sharing its ID
+    // and the list itself is never searched.
+    private static final int rebuildThreshold = 16;
+
+    private final ObservableList<T> list;
+    private final ToIntFunction<T> keyOf;
+    private int[] keys;
+    private Object[] values;
+    // Per slot, null or the other entities with the key
+    private Object[] sharing;
+    private int size;
+
+    public IdIndex(ObservableList<T> list, ToIntFunction<T> keyOf) {
+        this.list = list;
+        this.keyOf = keyOf;
+        rebuild();
+        list.addListener((ListChangeListener<T>) change -> {
+            while (change.next()) {
+                if (change.wasPermutated()) {
+                    continue;
+                }
+                // Bulk replacements (e.g. setAll) are cheaper to index from scratch
+                if (change.getRemovedSize() > rebuildThreshold) {
+                    rebuild();
+                    return;
+                }
+                for (T removed: change.getRemoved()) {
+                    remove(removed, keyOf.applyAsInt(removed));
+                }
+                for (T added: change.getAddedSubList()) {
+                    add(keyOf.applyAsInt(added), added);
+                }
+            }
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    public synchronized T get(int key) {
+        int slot = find(key);
+        return slot < 0 ? null : (T) values[slot];
+    }
+
+    // Called by the ID setters, which change the key of an entity that may or may not be in the list
+    public synchronized void rekey(T entity, int previousKey) {
+        int slot = find(previousKey);
+        if (slot < 0) {
+            return;
+        }
+        if (values[slot] == entity || indexOf(sharing[slot], entity) >= 0) {
+            remove(entity, previousKey);
+            add(keyOf.applyAsInt(entity), entity);
+        }
+    }
+
+    private synchronized void rebuild() {
+        keys = new int[16];
+        values = new Object[16];
+        sharing = new Object[16];
+        size = 0;
+        for (T entity: list) {
+            add(keyOf.applyAsInt(entity), entity);
+        }
+    }
+
+    // The slot of the key, or -1
+    private int find(int key) {
+        for (int slot = slot(key); values[slot] != null; slot = (slot + 1) & (keys.length - 1)) {
+            if (keys[slot] == key) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    private int slot(int key) {
+        int hash = key * 0x9E3779B9;
+        return (hash ^ (hash >>> 16)) & (keys.length - 1);
+    }
+
+    // Indexes the entity, after any others with its key
+    private synchronized void add(int key, T entity) {
+        if ((size + 1) * 4 > keys.length * 3) {
+            resize();
+        }
+        int slot = slot(key);
+        while (values[slot] != null) {
+            if (keys[slot] == key) {
+                if (sharing[slot] == null) {
+                    sharing[slot] = new ArrayList<>(2);
+                }
+                others(slot).add(entity);
+                return;
+            }
+            slot = (slot + 1) & (keys.length - 1);
+        }
+        keys[slot] = key;
+        values[slot] = entity;
+        sharing[slot] = null;
+        size++;
+    }
+
+    // The entity must be in the list with the key
+    private synchronized void remove(T entity, int key) {
+        int slot = find(key);
+        if (slot < 0) {
+            return;
+        }
+        List<Object> others = others(slot);
+        if (values[slot] != entity) {
+            int index = indexOf(others, entity);
+            if (index >= 0) {
+                others.remove(index);
+            }
+            return;
+        }
+        if (others != null && !others.isEmpty()) {
+            // The next entity indexed with the ID takes its place
+            values[slot] = others.remove(0);
+            return;
+        }
+        values[slot] = null;
+        sharing[slot] = null;
+        size--;
+        for (int next = (slot + 1) & (keys.length - 1); values[next] != null; next = (next + 1) & (keys.length - 1)) {
+            int home = slot(keys[next]);
+            boolean movable = slot <= next ? (home <= slot || home > next) : (home <= slot && home > next);
+            if (movable) {
+                keys[slot] = keys[next];
+                values[slot] = values[next];
+                sharing[slot] = sharing[next];
+                values[next] = null;
+                sharing[next] = null;
+                slot = next;
+            }
+        }
+    }
+
+    private void resize() {
+        int[] oldKeys = keys;
+        Object[] oldValues = values;
+        Object[] oldSharing = sharing;
+        keys = new int[oldKeys.length * 2];
+        values = new Object[oldKeys.length * 2];
+        sharing = new Object[oldKeys.length * 2];
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldValues[i] != null) {
+                reinsert(oldKeys[i], oldValues[i], oldSharing[i]);
+            }
+        }
+    }
+
+    private void reinsert(int key, Object value, Object others) {
+        int slot = slot(key);
+        while (values[slot] != null) {
+            slot = (slot + 1) & (keys.length - 1);
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        sharing[slot] = others;
+        size++;
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Object> others(int slot) {
+        return (List<Object>) sharing[slot];
+    }
+
+    // By identity, as entities with the same fields may still be different entries; -1 if absent
+    @SuppressWarnings("unchecked")
+    private static int indexOf(Object others, Object entity) {
+        if (others == null) {
+            return -1;
+        }
+        List<Object> list = (List<Object>) others;
+        for (int index = 0; index < list.size(); index++) {
+            if (list.get(index) == entity) {
+                return index;
+            }
+        }
+        return -1;
+    }
+}
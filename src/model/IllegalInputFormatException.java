@@ -3,6 +3,7 @@ package model;
 public class IllegalInputFormatException extends Exception {
     // Exception to signify:
     // - input is in a wrong format (e.g. contact number, email address)
+    // - an imported row names a category or supplier that does not exist
     public IllegalInputFormatException() {
         super();
     }
@@ -18,4 +19,16 @@ public class IllegalInputFormatException extends Exception {
             super();
         }
     }
+
+    public static class Category extends IllegalInputFormatException {
+        public Category() {
+            super();
+        }
+    }
+
+    public static class Supplier extends IllegalInputFormatException {
+        public Supplier() {
+            super();
+        }
+    }
 }
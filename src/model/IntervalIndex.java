@@ -0,0 +1,246 @@
+package model;
+
+import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableList;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ToLongFunction;
+
+public class IntervalIndex<T> {
+    // Interval tree over entities with a start and an end (catalogues and their dates), for "which are active on
+    // this day" and "which overlap this period" without looking at every entity. Both ends are inclusive.
+    // The tree is a treap ordered by start, in primitive arrays indexed by node: random priorities keep it balanced
+    // without rebalancing rules, so an insertion or removal touches O(log n) nodes. maxEnds holds the latest end
+    // in each subtree and is updated along the path of every change, so a search skips every subtree that ends
+    // before the period and every right subtree that starts after it. Follows the list through a change listener;
+    // the setters of the start and end call refresh().
+    private static final int rebuildThreshold = 16;
+    private static final int none = -1;
+
+    private final ObservableList<T> list;
+    private final ToLongFunction<T> startOf;
+    private final ToLongFunction<T> endOf;
+    private long[] starts = new long[16];
+    private long[] ends = new long[16];
+    private long[] maxEnds = new long[16];
+    // Equal starts are kept in the order they were added
+    private long[] sequences = new long[16];
+    private int[] priorities = new int[16];
+    private int[] lefts = new int[16];
+    private int[] rights = new int[16];
+    private Object[] entities = new Object[16];
+    private int root = none;
+    private int nodeCount;
+    // Nodes freed by removals, chained through lefts
+    private int freeNode = none;
+    private long nextSequence;
+    private int seed = 0x2545F491;
+    private final Map<T, Integer> nodes = new IdentityHashMap<>();
+
+    public IntervalIndex(ObservableList<T> list, ToLongFunction<T> startOf, ToLongFunction<T> endOf) {
+        this.list = list;
+        this.startOf = startOf;
+        this.endOf = endOf;
+        rebuild();
+        list.addListener((ListChangeListener<T>) change -> {
+            while (change.next()) {
+                if (change.wasPermutated()) {
+                    continue;
+                }
+                if (change.getRemovedSize() > rebuildThreshold) {
+                    rebuild();
+                    return;
+                }
+                for (T removed: change.getRemoved()) {
+                    remove(removed);
+                }
+                for (T added: change.getAddedSubList()) {
+                    add(added);
+                }
+            }
+        });
+    }
+
+    // Entities whose interval contains the point
+    public List<T> findContaining(long point) {
+        return findOverlapping(point, point);
+    }
+
+    // Entities whose interval shares at least one point with from..to, in order of start
+    public synchronized List<T> findOverlapping(long from, long to) {
+        List<T> results = new ArrayList<>();
+        if (from > to) {
+            return results;
+        }
+        collect(root, from, to, results);
+        return results;
+    }
+
+    public synchronized void refresh(T entity) {
+        if (nodes.containsKey(entity)) {
+            remove(entity);
+            add(entity);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void collect(int node, long from, long to, List<T> results) {
+        while (node != none && maxEnds[node] >= from) {
+            collect(lefts[node], from, to, results);
+            if (starts[node] > to) {
+                return;
+            }
+            if (ends[node] >= from) {
+                results.add((T) entities[node]);
+            }
+            node = rights[node];
+        }
+    }
+
+    private synchronized void rebuild() {
+        nodes.clear();
+        Arrays.fill(entities, null);
+        root = none;
+        nodeCount = 0;
+        freeNode = none;
+        for (T entity: list) {
+            add(entity);
+        }
+    }
+
+    private synchronized void add(T entity) {
+        int node = newNode();
+        starts[node] = startOf.applyAsLong(entity);
+        ends[node] = endOf.applyAsLong(entity);
+        maxEnds[node] = ends[node];
+        sequences[node] = nextSequence++;
+        seed ^= seed << 13;
+        seed ^= seed >>> 17;
+        seed ^= seed << 5;
+        priorities[node] = seed;
+        lefts[node] = none;
+        rights[node] = none;
+        entities[node] = entity;
+        root = insert(root, node);
+        nodes.put(entity, node);
+    }
+
+    private synchronized void remove(T entity) {
+        Integer node = nodes.remove(entity);
+        if (node == null) {
+            return;
+        }
+        root = delete(root, node);
+        entities[node] = null;
+        lefts[node] = freeNode;
+        freeNode = node;
+    }
+
+    // Returns the new root of the subtree
+    private int insert(int subtree, int node) {
+        if (subtree == none) {
+            return node;
+        }
+        if (before(node, subtree)) {
+            lefts[subtree] = insert(lefts[subtree], node);
+            if (priorities[lefts[subtree]] > priorities[subtree]) {
+                subtree = rotateRight(subtree);
+            }
+        } else {
+            rights[subtree] = insert(rights[subtree], node);
+            if (priorities[rights[subtree]] > priorities[subtree]) {
+                subtree = rotateLeft(subtree);
+            }
+        }
+        update(subtree);
+        return subtree;
+    }
+
+    private int delete(int subtree, int node) {
+        if (subtree == node) {
+            return merge(lefts[node], rights[node]);
+        }
+        if (before(node, subtree)) {
+            lefts[subtree] = delete(lefts[subtree], node);
+        } else {
+            rights[subtree] = delete(rights[subtree], node);
+        }
+        update(subtree);
+        return subtree;
+    }
+
+    // Every node of left comes before every node of right
+    private int merge(int left, int right) {
+        if (left == none) {
+            return right;
+        }
+        if (right == none) {
+            return left;
+        }
+        if (priorities[left] > priorities[right]) {
+            rights[left] = merge(rights[left], right);
+            update(left);
+            return left;
+        }
+        lefts[right] = merge(left, lefts[right]);
+        update(right);
+        return right;
+    }
+
+    private int rotateRight(int node) {
+        int left = lefts[node];
+        lefts[node] = rights[left];
+        rights[left] = node;
+        update(node);
+        update(left);
+        return left;
+    }
+
+    private int rotateLeft(int node) {
+        int right = rights[node];
+        rights[node] = lefts[right];
+        lefts[right] = node;
+        update(node);
+        update(right);
+        return right;
+    }
+
+    private void update(int node) {
+        long maxEnd = ends[node];
+        if (lefts[node] != none) {
+            maxEnd = Math.max(maxEnd, maxEnds[lefts[node]]);
+        }
+        if (rights[node] != none) {
+            maxEnd = Math.max(maxEnd, maxEnds[rights[node]]);
+        }
+        maxEnds[node] = maxEnd;
+    }
+
+    private boolean before(int node, int other) {
+        return starts[node] < starts[other] || (starts[node] == starts[other] && sequences[node] < sequences[other]);
+    }
+
+    private int newNode() {
+        if (freeNode != none) {
+            int node = freeNode;
+            freeNode = lefts[node];
+            return node;
+        }
+        if (nodeCount == starts.length) {
+            int capacity = nodeCount * 2;
+            starts = Arrays.copyOf(starts, capacity);
+            ends = Arrays.copyOf(ends, capacity);
+            maxEnds = Arrays.copyOf(maxEnds, capacity);
+            sequences = Arrays.copyOf(sequences, capacity);
+            priorities = Arrays.copyOf(priorities, capacity);
+            lefts = Arrays.copyOf(lefts, capacity);
+            rights = Arrays.copyOf(rights, capacity);
+            entities = Arrays.copyOf(entities, capacity);
+        }
+        return nodeCount++;
+    }
+}
@@ -0,0 +1,430 @@
+package model;
+
+import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableList;
+import model.objects.*;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ToIntFunction;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+public class Journal {
+    // Append-only record of every add/edit/delete/status change since the last snapshot.
+    // Each line is "<operation>|<kind>|<record>", where <record> is the entity's toString():
+    // - PUT|Product|16|asd|1|0|1|1.0|1.0|0.0%   (entity added or edited)
+    // - DEL|Product|16                          (entity deleted)
+    // - ADD|LoginLog|<log record>               (log appended)
+    // - ID|Product|28                           (ID counter advanced)
+    // Replaying applies the final state of each entity through a Repository: a ListRepository over the lists
+    // at startup, and with -Dstorage=keyvalue the stores at each checkpoint, so those only take what changed.
+    public static final File journalFile = new File(IOWriterReader.dataDirectory + "Journal.txt");
+    // Records from before a checkpoint that is still being written; removed once the checkpoint is on disk
+    public static final File checkpointJournalFile = new File(IOWriterReader.dataDirectory + "Journal.checkpoint.txt");
+
+    // Records are fsync'd once this many are pending, or after the delay, whichever comes first
+    private static final int batchSize = 64;
+    private static final long batchDelayMillis = 200;
+    // Once the journal grows past this size, onExit() folds it into a full snapshot
+    private static final long compactionThreshold = 4 * 1024 * 1024;
+
+    private static final List<String> pending = new ArrayList<>();
+    private static final Map<String, Integer> pendingPut = new HashMap<>();
+    private static FileChannel channel;
+    private static ScheduledExecutorService flusher;
+
+    public static void open() throws IOException {
+        channel = FileChannel.open(journalFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+        flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "journal-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(Journal::flushQuietly, batchDelayMillis, batchDelayMillis, TimeUnit.MILLISECONDS);
+
+        watch(Product.products, "Product");
+        watch(Catalogue.catalogues, "Catalogue");
+        watch(Category.categories, "Category");
+        watch(Supplier.suppliers, "Supplier");
+        watch(User.users, "User");
+        watch(Log.loginLogs, "LoginLog");
+        watch(Log.productLogs, "ProductLog");
+        watch(Log.catalogueLogs, "CatalogueLog");
+        watch(Log.supplierLogs, "SupplierLog");
+    }
+
+    private static <T> void watch(ObservableList<T> list, String kind) {
+        list.addListener((ListChangeListener<T>) change -> {
+            while (change.next()) {
+                // Permutations only reorder the list (e.g. sorting a table), nothing to persist
+                if (change.wasPermutated()) {
+                    continue;
+                }
+                if (change.wasRemoved()) {
+                    for (T removed: change.getRemoved()) {
+                        delete(removed);
+                    }
+                }
+                if (change.wasAdded()) {
+                    for (T added: change.getAddedSubList()) {
+                        if (added instanceof Log) {
+                            append("ADD|" + kind + "|" + added.toString(), null);
+                        } else {
+                            update(added);
+                        }
+                    }
+                }
+            }
+        });
+    }
+
+    // Called by the entity setters and whenever an entity is added
+    public static void update(Object entity) {
+        if (channel == null) {
+            return;
+        }
+        String key = keyOf(entity);
+        append("PUT|" + key.substring(0, key.indexOf('|')) + "|" + entity.toString(), key);
+    }
+
+    public static void delete(Object entity) {
+        if (channel == null || entity instanceof Log) {
+            return;
+        }
+        String key = keyOf(entity);
+        synchronized (pending) {
+            pendingPut.remove(key);
+        }
+        append("DEL|" + key, null);
+    }
+
+    static void recordId(String kind, int id) {
+        if (channel == null) {
+            return;
+        }
+        append("ID|" + kind + "|" + id, null);
+    }
+
+    private static void append(String line, String putKey) {
+        int pendingCount;
+        synchronized (pending) {
+            // Several setters are usually called for one edit, only the latest state needs to be kept
+            Integer previousIndex = putKey == null ? null : pendingPut.get(putKey);
+            if (previousIndex != null) {
+                pending.set(previousIndex, line);
+            } else {
+                pending.add(line);
+                if (putKey != null) {
+                    pendingPut.put(putKey, pending.size() - 1);
+                }
+            }
+            pendingCount = pending.size();
+        }
+        if (pendingCount >= batchSize && flusher != null) {
+            flusher.execute(Journal::flushQuietly);
+        }
+    }
+
+    private static String keyOf(Object entity) {
+        if (entity instanceof Product) {
+            return "Product|" + ((Product) entity).getProductId();
+        } else if (entity instanceof Catalogue) {
+            return "Catalogue|" + ((Catalogue) entity).getCatalogueId();
+        } else if (entity instanceof Category) {
+            return "Category|" + ((Category) entity).getCategoryId();
+        } else if (entity instanceof Supplier) {
+            return "Supplier|" + ((Supplier) entity).getSupplierId();
+        } else if (entity instanceof User) {
+            return "User|" + ((User) entity).getUserId();
+        }
+        throw new IllegalArgumentException(entity.getClass().getName());
+    }
+
+    public static void flush() throws IOException {
+        // Batches must reach the file in the order they were taken, so the swap happens under the write lock
+        synchronized (Journal.class) {
+            List<String> batch;
+            synchronized (pending) {
+                if (channel == null || pending.isEmpty()) {
+                    return;
+                }
+                batch = new ArrayList<>(pending);
+                pending.clear();
+                pendingPut.clear();
+            }
+
+            StringBuilder builder = new StringBuilder();
+            for (String line: batch) {
+                builder.append(line).append('\n');
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(builder.toString().getBytes(StandardCharsets.UTF_8));
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        }
+    }
+
+    private static void flushQuietly() {
+        try {
+            flush();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    public static void close() throws IOException {
+        if (channel == null) {
+            return;
+        }
+        flusher.shutdown();
+        flush();
+        synchronized (Journal.class) {
+            channel.close();
+            channel = null;
+        }
+    }
+
+    // Called on the FX thread together with SnapshotWriter.capture(): everything journaled so far moves to the
+    // checkpoint journal, and new records start a fresh journal that is replayed on top of the checkpoint
+    public static void rotate() throws IOException {
+        synchronized (Journal.class) {
+            if (channel == null) {
+                return;
+            }
+            flush();
+            channel.close();
+            if (checkpointJournalFile.exists()) {
+                // The previous checkpoint failed, its records are still needed
+                Files.write(checkpointJournalFile.toPath(), Files.readAllBytes(journalFile.toPath()),
+                        StandardOpenOption.APPEND);
+                Files.delete(journalFile.toPath());
+            } else {
+                Files.move(journalFile.toPath(), checkpointJournalFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            }
+            channel = FileChannel.open(journalFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.APPEND);
+        }
+    }
+
+    // Called once the snapshot captured at the last rotate() has been written
+    public static void checkpointed() throws IOException {
+        Files.deleteIfExists(checkpointJournalFile.toPath());
+    }
+
+    public static boolean needsCompaction() {
+        return journalFile.length() > compactionThreshold;
+    }
+
+    // Called once the snapshot files contain everything in the journal
+    public static void reset() throws IOException {
+        Files.write(journalFile.toPath(), new byte[0]);
+        Files.deleteIfExists(checkpointJournalFile.toPath());
+    }
+
+    public static void replay() throws IOException, ParseException {
+        // Only the final state of each entity matters, a deleted entity maps to null
+        Map<String, String> finalState = new LinkedHashMap<>();
+        Map<String, List<String>> appendedLogs = new LinkedHashMap<>();
+        // A checkpoint journal left behind by an interrupted checkpoint comes before the current journal
+        for (File file: new File[] {checkpointJournalFile, journalFile}) {
+            if (file.exists()) {
+                read(file, finalState, appendedLogs, true);
+            }
+        }
+
+        for (Map.Entry<String, List<String>> entry: appendedLogs.entrySet()) {
+            ObservableList<Log> logs = logsOf(entry.getKey());
+            Repository<Log> repository = ListRepository.logs(logs);
+            // Compared as parsed logs, since the records may predate the log file's current timestamp format
+            List<Log> records = new ArrayList<>(entry.getValue().size());
+            for (String record: entry.getValue()) {
+                records.add(IOWriterReader.parseLog(record));
+            }
+            // A snapshot may have appended some of these to the log file before the journal was cleared
+            for (Log record: records.subList(persistedCount(logs, records), records.size())) {
+                repository.save(record);
+            }
+        }
+
+        apply(Product.products, Product::getProductId, finalState, "Product");
+        apply(Catalogue.catalogues, Catalogue::getCatalogueId, finalState, "Catalogue");
+        apply(Category.categories, Category::getCategoryId, finalState, "Category");
+        apply(Supplier.suppliers, Supplier::getSupplierId, finalState, "Supplier");
+        apply(User.users, User::getUserId, finalState, "User");
+    }
+
+    // Applies the entity records of the journals to the key-value stores and makes them durable; run by the
+    // snapshot writer, on the journals that the checkpoint covers
+    static Void applyToStores(File... journals) throws IOException {
+        Map<String, String> finalState = new LinkedHashMap<>();
+        for (File file: journals) {
+            if (file.exists()) {
+                read(file, finalState, new LinkedHashMap<>(), false);
+            }
+        }
+        for (String kind: new String[] {"Product", "Catalogue", "Category", "Supplier", "User"}) {
+            KeyValueRepository<Object> store = KeyValueRepository.open(kind);
+            if (applyTo(store, finalState, kind)) {
+                store.sync();
+                if (store.needsCompaction()) {
+                    store.compact();
+                }
+            }
+        }
+        return null;
+    }
+
+    // The timestamp of the oldest log appended in the journals, or Long.MAX_VALUE if there is none. Logs are
+    // journaled in the order they are logged, so that is the first one of each journal.
+    public static long earliestLogTimestamp() throws IOException {
+        long earliest = Long.MAX_VALUE;
+        for (File file: new File[] {checkpointJournalFile, journalFile}) {
+            if (!file.exists()) {
+                continue;
+            }
+            try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    String[] operation = line.split("\\|", 3);
+                    if (!operation[0].equals("ADD") || operation.length < 3) {
+                        continue;
+                    }
+                    try {
+                        earliest = Math.min(earliest, IOWriterReader.parseLog(operation[2]).getTimestamp().getTime());
+                        break;
+                    } catch (ParseException | RuntimeException e) {
+                        // A record torn by a crash mid-write, which replay skips as well
+                    }
+                }
+            }
+        }
+        return earliest;
+    }
+
+    private static void read(File file, Map<String, String> finalState, Map<String, List<String>> appendedLogs,
+                             boolean restoreIds) throws IOException {
+        String content = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+        String[] lines = content.split("\n", -1);
+        // The last element is either empty or a record torn by a crash mid-write, skip it either way
+        for (int i = 0; i < lines.length - 1; i++) {
+            String[] operation = lines[i].split("\\|", 3);
+            switch (operation[0]) {
+                case "PUT":
+                    String id = operation[2].substring(0, operation[2].indexOf('|'));
+                    finalState.put(operation[1] + "|" + id, operation[2]);
+                    break;
+                case "DEL":
+                    finalState.put(operation[1] + "|" + operation[2], null);
+                    break;
+                case "ADD":
+                    appendedLogs.computeIfAbsent(operation[1], kind -> new ArrayList<>()).add(operation[2]);
+                    break;
+                case "ID":
+                    if (!restoreIds) {
+                        break;
+                    }
+                    IOWriterReader.restoreId(operation[1], Integer.parseInt(operation[2]));
+                    ChangeTracker.markDirty("ID");
+                    break;
+            }
+        }
+    }
+
+    // The list changes once, and lists the journal does not mention are left alone, so they are not reported
+    // as changed
+    private static <T> void apply(ObservableList<T> list, ToIntFunction<T> keyOf, Map<String, String> finalState,
+                                  String kind) throws IOException {
+        List<T> result = new ArrayList<>(list);
+        if (applyTo(new ListRepository<>(result, keyOf), finalState, kind)) {
+            list.setAll(result);
+        }
+    }
+
+    // Saves the entities of the kind the journal ends with and deletes the ones it deleted; edited entities keep
+    // their position, added ones follow in the order they were journaled. Returns whether the kind had any.
+    @SuppressWarnings("unchecked")
+    private static <T> boolean applyTo(Repository<T> repository, Map<String, String> finalState, String kind)
+            throws IOException {
+        boolean touched = false;
+        for (Map.Entry<String, String> entry: finalState.entrySet()) {
+            if (!entry.getKey().startsWith(kind + "|")) {
+                continue;
+            }
+            touched = true;
+            if (entry.getValue() == null) {
+                repository.deleteById(Integer.parseInt(entry.getKey().substring(kind.length() + 1)));
+            } else {
+                repository.save((T) parse(kind, entry.getValue()));
+            }
+        }
+        return touched;
+    }
+
+    private static Object parse(String kind, String record) throws IOException {
+        switch (kind) {
+            case "Product":
+                return IOWriterReader.parseProduct(record);
+            case "Catalogue":
+                return IOWriterReader.parseCatalogue(record);
+            case "Category":
+                return IOWriterReader.parseCategory(record);
+            case "Supplier":
+                return IOWriterReader.parseSupplier(record);
+            case "User":
+                return IOWriterReader.parseUser(record);
+        }
+        throw new IllegalArgumentException(kind);
+    }
+
+    // The number of leading records that already sit at the end of the loaded log
+    private static int persistedCount(List<Log> logs, List<Log> records) {
+        for (int start = Math.max(0, logs.size() - records.size()); start < logs.size(); start++) {
+            int count = logs.size() - start;
+            if (logs.get(start).equals(records.get(0)) && endsWith(logs, records.subList(0, count))) {
+                return count;
+            }
+        }
+        return 0;
+    }
+
+    private static boolean endsWith(List<Log> logs, List<Log> records) {
+        int offset = logs.size() - records.size();
+        for (int i = 0; i < records.size(); i++) {
+            if (!logs.get(offset + i).equals(records.get(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static ObservableList<Log> logsOf(String kind) {
+        switch (kind) {
+            case "LoginLog":
+                return Log.loginLogs;
+            case "ProductLog":
+                return Log.productLogs;
+            case "CatalogueLog":
+                return Log.catalogueLogs;
+            case "SupplierLog":
+                return Log.supplierLogs;
+        }
+        throw new IllegalArgumentException(kind);
+    }
+}
@@ -0,0 +1,419 @@
+package model;
+
+import model.objects.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ToIntFunction;
+import java.util.zip.CRC32;
+
+public class KeyValueRepository<T> implements Repository<T> {
+    // Embedded store: an append-only data file plus an in-memory hash index from key to file offset, so only
+    // the offsets are kept on the heap and every read goes to the file.
+    // Entry layout: length (int, of the rest), CRC32 of the rest (int), operation (byte), key (int), record (UTF-8).
+    // The record is the entity's toString(), decoded with the same parsers as the text files.
+    // Started with -Dstorage=keyvalue, the application keeps the stores instead of Product.txt, Catalogue.txt,
+    // Category.txt, Supplier.txt and User.txt; a store that does not exist yet is filled from its text file on
+    // the first load. The stores stay open from then on (see open()), and each checkpoint applies the changes
+    // journaled since the last one with save() and deleteById(), so a checkpoint only appends what changed.
+    // Once most entries in a store are superseded, the checkpoint compacts it. The journal, the ID counters and
+    // the logs stay in their files either way.
+    public static final String storeDirectory = IOWriterReader.dataDirectory + "store\\";
+
+    private static final byte putOperation = 1;
+    private static final byte deleteOperation = 0;
+    private static final int entryHeaderLength = 4 + 4 + 1 + 4;
+    // Superseded and delete entries allowed beyond the live ones before compacting
+    private static final int compactionSlack = 1024;
+    private static final Map<String, KeyValueRepository<?>> openStores = new HashMap<>();
+
+    private final File file;
+    private FileChannel channel;
+    private final RecordCodec.RecordDecoder<T> decoder;
+    private final ToIntFunction<T> keyOf;
+    private OffsetIndex index;
+    private long end;
+    // Entries in the data file, live or not
+    private long entryCount;
+
+    public KeyValueRepository(File file, RecordCodec.RecordDecoder<T> decoder, ToIntFunction<T> keyOf)
+            throws IOException {
+        this.file = file;
+        this.decoder = decoder;
+        this.keyOf = keyOf;
+        if (file.getParentFile() != null) {
+            file.getParentFile().mkdirs();
+        }
+        open();
+    }
+
+    private void open() throws IOException {
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        index = new OffsetIndex();
+        entryCount = 0;
+        buildIndex();
+    }
+
+    public static boolean isActive() {
+        return "keyvalue".equals(System.getProperty("storage"));
+    }
+
+    // kind is one of "Product", "Catalogue", "Category", "Supplier" or "User"
+    public static File storeFile(String kind) {
+        return new File(storeDirectory + kind + ".db");
+    }
+
+    // The application's store of the kind, opened on first use and kept open until closeAll()
+    @SuppressWarnings("unchecked")
+    public static <T> KeyValueRepository<T> open(String kind) throws IOException {
+        synchronized (openStores) {
+            KeyValueRepository<?> store = openStores.get(kind);
+            if (store == null) {
+                switch (kind) {
+                    case "Product":
+                        store = products();
+                        break;
+                    case "Catalogue":
+                        store = catalogues();
+                        break;
+                    case "Category":
+                        store = categories();
+                        break;
+                    case "Supplier":
+                        store = suppliers();
+                        break;
+                    case "User":
+                        store = users();
+                        break;
+                    default:
+                        throw new IllegalArgumentException(kind);
+                }
+                openStores.put(kind, store);
+            }
+            return (KeyValueRepository<T>) store;
+        }
+    }
+
+    public static void closeAll() throws IOException {
+        synchronized (openStores) {
+            for (KeyValueRepository<?> store: openStores.values()) {
+                store.close();
+            }
+            openStores.clear();
+        }
+    }
+
+    public static KeyValueRepository<Product> products() throws IOException {
+        return new KeyValueRepository<>(storeFile("Product"), IOWriterReader::parseProduct, Product::getProductId);
+    }
+
+    public static KeyValueRepository<Catalogue> catalogues() throws IOException {
+        return new KeyValueRepository<>(storeFile("Catalogue"), IOWriterReader::parseCatalogue,
+                Catalogue::getCatalogueId);
+    }
+
+    public static KeyValueRepository<Category> categories() throws IOException {
+        return new KeyValueRepository<>(storeFile("Category"), IOWriterReader::parseCategory,
+                Category::getCategoryId);
+    }
+
+    public static KeyValueRepository<Supplier> suppliers() throws IOException {
+        return new KeyValueRepository<>(storeFile("Supplier"), IOWriterReader::parseSupplier, Supplier::getSupplierId);
+    }
+
+    public static KeyValueRepository<User> users() throws IOException {
+        return new KeyValueRepository<>(storeFile("User"), IOWriterReader::parseUser, User::getUserId);
+    }
+
+    // Scans the data file once; later entries for a key replace earlier ones
+    private void buildIndex() throws IOException {
+        long size = channel.size();
+        long position = 0;
+        ByteBuffer header = ByteBuffer.allocate(entryHeaderLength);
+        while (position + entryHeaderLength <= size) {
+            header.clear();
+            readFully(header, position);
+            header.flip();
+            int length = header.getInt();
+            int checksum = header.getInt();
+            if (length < entryHeaderLength - 8 || position + 8 + length > size) {
+                break;
+            }
+            ByteBuffer entry = ByteBuffer.allocate(length);
+            readFully(entry, position + 8);
+            entry.flip();
+            if (checksum(entry) != checksum) {
+                break;
+            }
+            byte operation = entry.get();
+            int key = entry.getInt();
+            if (operation == putOperation) {
+                index.put(key, position);
+            } else {
+                index.remove(key);
+            }
+            position += 8 + length;
+            entryCount++;
+        }
+        // Anything after the last complete entry was torn by a crash mid-write
+        if (position < size) {
+            channel.truncate(position);
+        }
+        end = position;
+    }
+
+    @Override
+    public synchronized T findById(int id) throws IOException {
+        long offset = index.get(id);
+        return offset < 0 ? null : read(offset);
+    }
+
+    private T read(long offset) throws IOException {
+        ByteBuffer lengthBuffer = ByteBuffer.allocate(4);
+        readFully(lengthBuffer, offset);
+        lengthBuffer.flip();
+        int recordLength = lengthBuffer.getInt() - 5;
+        ByteBuffer record = ByteBuffer.allocate(recordLength);
+        readFully(record, offset + entryHeaderLength);
+        try {
+            return decoder.decode(RecordCodec.cursor(new String(record.array(), StandardCharsets.UTF_8)));
+        } catch (ParseException exception) {
+            throw new IOException("Corrupt record at " + offset + " in " + file, exception);
+        }
+    }
+
+    @Override
+    public synchronized List<T> findAll() throws IOException {
+        // Reading in file order keeps the reads sequential; entities are returned by ID, since a saved entity
+        // moves to the end of the file
+        long[] offsets = index.offsets();
+        Arrays.sort(offsets);
+        List<T> entities = new ArrayList<>(offsets.length);
+        for (long offset: offsets) {
+            entities.add(read(offset));
+        }
+        entities.sort(Comparator.comparingInt(keyOf));
+        return entities;
+    }
+
+    @Override
+    public synchronized void save(T entity) throws IOException {
+        int key = keyOf.applyAsInt(entity);
+        long offset = append(putOperation, key, entity.toString());
+        index.put(key, offset);
+    }
+
+    @Override
+    public synchronized void deleteById(int id) throws IOException {
+        if (index.get(id) < 0) {
+            return;
+        }
+        append(deleteOperation, id, "");
+        index.remove(id);
+    }
+
+    private long append(byte operation, int key, String record) throws IOException {
+        byte[] recordBytes = record.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer entry = ByteBuffer.allocate(entryHeaderLength + recordBytes.length);
+        entry.putInt(5 + recordBytes.length).putInt(0).put(operation).putInt(key).put(recordBytes);
+        entry.position(8);
+        int checksum = checksum(entry.slice());
+        entry.putInt(4, checksum);
+        entry.position(0);
+
+        long offset = end;
+        while (entry.hasRemaining()) {
+            end += channel.write(entry, end);
+        }
+        entryCount++;
+        return offset;
+    }
+
+    private static int checksum(ByteBuffer buffer) {
+        CRC32 crc = new CRC32();
+        crc.update(buffer.duplicate());
+        return (int) crc.getValue();
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new IOException("Unexpected end of " + file);
+            }
+            position += read;
+        }
+    }
+
+    @Override
+    public synchronized int size() {
+        return index.size();
+    }
+
+    // Makes every save and delete so far durable
+    public synchronized void sync() throws IOException {
+        channel.force(false);
+    }
+
+    // Whether superseded and delete entries make up most of the data file
+    public synchronized boolean needsCompaction() {
+        return entryCount > 2L * index.size() + compactionSlack;
+    }
+
+    // Rewrites the data file with only the latest entry of every live key
+    public synchronized void compact() throws IOException {
+        List<T> entities = findAll();
+        channel.close();
+        write(file, entities, keyOf);
+        open();
+    }
+
+    // Replaces the store in the file with one holding exactly the entities; used to fill a new store and to
+    // compact one. The store is built next to the file and moved over it, so a crash leaves either the old store
+    // or the new one.
+    public static <T> Void write(File file, List<T> entities, ToIntFunction<T> keyOf) throws IOException {
+        File temporary = new File(file.getPath() + ".tmp");
+        // Left behind by a crash during an earlier write, and not to be appended to
+        Files.deleteIfExists(temporary.toPath());
+        try (KeyValueRepository<T> target = new KeyValueRepository<>(temporary, null, keyOf)) {
+            for (T entity: entities) {
+                target.save(entity);
+            }
+        }
+        Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE,
+                StandardCopyOption.REPLACE_EXISTING);
+        return null;
+    }
+
+    // Copies the data files into the stores, replacing them, e.g. "KeyValueRepository import"
+    public static void main(String[] args) throws IOException, ParseException {
+        if (args.length != 1 || !args[0].equals("import")) {
+            System.out.println("Usage: KeyValueRepository import");
+            return;
+        }
+        System.clearProperty("storage");
+        IOWriterReader.onStartup();
+        Journal.close();
+        write(storeFile("Product"), Product.products, Product::getProductId);
+        write(storeFile("Catalogue"), Catalogue.catalogues, Catalogue::getCatalogueId);
+        write(storeFile("Category"), Category.categories, Category::getCategoryId);
+        write(storeFile("Supplier"), Supplier.suppliers, Supplier::getSupplierId);
+        write(storeFile("User"), User.users, User::getUserId);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (channel.isOpen()) {
+            channel.force(false);
+            channel.close();
+        }
+    }
+
+    // Open addressing with linear probing; removal shifts the following entries back instead of leaving tombstones
+    private static class OffsetIndex {
+        private int[] keys = new int[16];
+        private long[] offsets = new long[16];
+        private boolean[] used = new boolean[16];
+        private int size;
+
+        private int slot(int key) {
+            int hash = key * 0x9E3779B9;
+            return (hash ^ (hash >>> 16)) & (keys.length - 1);
+        }
+
+        long get(int key) {
+            for (int slot = slot(key); used[slot]; slot = (slot + 1) & (keys.length - 1)) {
+                if (keys[slot] == key) {
+                    return offsets[slot];
+                }
+            }
+            return -1;
+        }
+
+        void put(int key, long offset) {
+            if ((size + 1) * 4 > keys.length * 3) {
+                resize();
+            }
+            int slot = slot(key);
+            while (used[slot]) {
+                if (keys[slot] == key) {
+                    offsets[slot] = offset;
+                    return;
+                }
+                slot = (slot + 1) & (keys.length - 1);
+            }
+            used[slot] = true;
+            keys[slot] = key;
+            offsets[slot] = offset;
+            size++;
+        }
+
+        void remove(int key) {
+            int slot = slot(key);
+            while (used[slot] && keys[slot] != key) {
+                slot = (slot + 1) & (keys.length - 1);
+            }
+            if (!used[slot]) {
+                return;
+            }
+            used[slot] = false;
+            size--;
+            // Move back any entry that probed past the freed slot
+            for (int next = (slot + 1) & (keys.length - 1); used[next]; next = (next + 1) & (keys.length - 1)) {
+                int home = slot(keys[next]);
+                boolean movable = slot <= next ? (home <= slot || home > next) : (home <= slot && home > next);
+                if (movable) {
+                    keys[slot] = keys[next];
+                    offsets[slot] = offsets[next];
+                    used[slot] = true;
+                    used[next] = false;
+                    slot = next;
+                }
+            }
+        }
+
+        private void resize() {
+            int[] oldKeys = keys;
+            long[] oldOffsets = offsets;
+            boolean[] oldUsed = used;
+            keys = new int[oldKeys.length * 2];
+            offsets = new long[oldKeys.length * 2];
+            used = new boolean[oldKeys.length * 2];
+            size = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldUsed[i]) {
+                    put(oldKeys[i], oldOffsets[i]);
+                }
+            }
+        }
+
+        long[] offsets() {
+            long[] values = new long[size];
+            int count = 0;
+            for (int i = 0; i < keys.length; i++) {
+                if (used[i]) {
+                    values[count++] = offsets[i];
+                }
+            }
+            return values;
+        }
+
+        int size() {
+            return size;
+        }
+    }
+}
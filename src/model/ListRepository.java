@@ -0,0 +1,87 @@
+package model;
+
+import model.objects.Log;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ToIntFunction;
+
+public class ListRepository<T> implements Repository<T> {
+    // The text-file backend: entities live in the lists the screens are bound to, and reach the text files
+    // through the journal and the snapshots like any other change to those lists. Replaying the journal goes
+    // through it, on a copy of each list that then replaces the list in one change.
+    // Lookups by ID go through a map of positions built on the first one; removing an entity drops the map.
+    private final List<T> list;
+    private final ToIntFunction<T> keyOf;
+    private Map<Integer, Integer> positions;
+
+    // keyOf is null for logs, which are then keyed by position
+    public ListRepository(List<T> list, ToIntFunction<T> keyOf) {
+        this.list = list;
+        this.keyOf = keyOf;
+    }
+
+    // Saved rows are read from the log file, so a point read does not load the rest
+    public static ListRepository<Log> logs(List<Log> logs) {
+        return new ListRepository<>(logs, null);
+    }
+
+    @Override
+    public T findById(int id) {
+        int index = indexOf(id);
+        return index < 0 ? null : list.get(index);
+    }
+
+    @Override
+    public List<T> findAll() {
+        return new ArrayList<>(list);
+    }
+
+    @Override
+    public void save(T entity) {
+        int index = keyOf == null ? -1 : indexOf(keyOf.applyAsInt(entity));
+        if (index < 0) {
+            list.add(entity);
+            if (positions != null) {
+                positions.putIfAbsent(keyOf.applyAsInt(entity), list.size() - 1);
+            }
+        } else if (list.get(index) != entity) {
+            list.set(index, entity);
+        }
+    }
+
+    @Override
+    public void deleteById(int id) {
+        int index = indexOf(id);
+        if (index >= 0) {
+            list.remove(index);
+            positions = null;
+        }
+    }
+
+    private int indexOf(int id) {
+        if (keyOf == null) {
+            return id >= 0 && id < list.size() ? id : -1;
+        }
+        if (positions == null) {
+            positions = new HashMap<>();
+            for (int i = 0; i < list.size(); i++) {
+                positions.putIfAbsent(keyOf.applyAsInt(list.get(i)), i);
+            }
+        }
+        Integer index = positions.get(id);
+        return index == null ? -1 : index;
+    }
+
+    @Override
+    public int size() {
+        return list.size();
+    }
+
+    @Override
+    public void close() {
+        // Persisted by the journal
+    }
+}
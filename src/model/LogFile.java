@@ -0,0 +1,359 @@
+package model;
+
+import model.objects.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class LogFile {
+    // Read-only, paged access to the records saved in a log file; a LogList reads its saved rows from here
+    // instead of holding them. The file is memory-mapped and scanned once for a sparse index: the byte offset of
+    // every pageSize-th record, and for every hour the first record written in it. A row is read by decoding its
+    // page from the mapping, and the last few pages are kept, so only the rows that are read get decoded; a time
+    // is found through the hour index. The scan also lists, for every user, where each of their records starts,
+    // so the records of one user are decoded one by one without reading the others.
+    // Only the first size() records are served. Records appended later are added with extend() once they are
+    // written, and the scan carries on from where it stopped; after a rewrite, reset() scans the file again.
+    // A file that Windows has mapped cannot be replaced, so the snapshot writer moves a rewritten log over its
+    // file through replace(), which unmaps that one file for the move alone. Reads of that file wait for the
+    // rename, not for the write before it; other files are not affected. Appends only add past the mapping.
+    private static final int pageSize = 256;
+    private static final int cachedPageCount = 32;
+    private static final long millisPerHour = 60 * 60 * 1000L;
+    private static final List<LogFile> openFiles = new ArrayList<>();
+
+    private final File file;
+    private MappedByteBuffer buffer;
+    private int recordCount;
+    // The scan stops after this many records
+    private int recordLimit;
+    // Where the scan carries on: the end of the last record indexed
+    private int indexedEnd;
+    // pageOffsets[p] is where record p * pageSize starts
+    private int[] pageOffsets = new int[16];
+    private int pageCount;
+    // hours[h] is an hour since the epoch, hourFirstRecords[h] the first record written in it (records are in
+    // time order as they are appended)
+    private long[] hours = new long[16];
+    private int[] hourFirstRecords = new int[16];
+    private int hourCount;
+    // By user ID, the byte offsets of the user's records in file order
+    private final Map<Integer, Offsets> offsetsByUser = new HashMap<>();
+    private final Map<Integer, Log[]> cachedPages = new LinkedHashMap<Integer, Log[]>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, Log[]> eldest) {
+            return size() > cachedPageCount;
+        }
+    };
+
+    private static class Offsets {
+        private int[] offsets = new int[4];
+        private int size;
+
+        private void add(int offset) {
+            if (size == offsets.length) {
+                offsets = Arrays.copyOf(offsets, size * 2);
+            }
+            offsets[size++] = offset;
+        }
+
+        // Index of the first offset >= value
+        private int firstAtLeast(int value) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (offsets[middle] < value) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+    }
+
+    private LogFile(File file) {
+        this.file = file;
+    }
+
+    // Indexes every record in the file
+    public static LogFile open(File file) throws IOException {
+        LogFile logFile = new LogFile(file);
+        logFile.recordLimit = Integer.MAX_VALUE;
+        logFile.map();
+        logFile.recordLimit = logFile.recordCount;
+        synchronized (openFiles) {
+            openFiles.add(logFile);
+        }
+        return logFile;
+    }
+
+    // Moves the temporary file over the log file, which is unmapped for the move and scanned again when next read
+    public static void replace(File file, Path temporary) throws IOException {
+        LogFile logFile = null;
+        synchronized (openFiles) {
+            for (LogFile openFile: openFiles) {
+                if (openFile.file.equals(file)) {
+                    logFile = openFile;
+                }
+            }
+        }
+        if (logFile == null) {
+            Files.move(temporary, file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            return;
+        }
+        synchronized (logFile) {
+            logFile.release();
+            Files.move(temporary, file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            logFile.reset(logFile.recordLimit);
+        }
+    }
+
+    public synchronized int size() {
+        return recordCount;
+    }
+
+    // The next count records in the file have been written since
+    public synchronized void extend(int count) {
+        recordLimit = recordCount + count;
+        // The last page may have been partial
+        cachedPages.remove((recordCount - 1) / pageSize);
+        // Scanned when the file is next read
+        release();
+    }
+
+    // The file has been rewritten with count records
+    public synchronized void reset(int count) {
+        recordLimit = count;
+        recordCount = 0;
+        indexedEnd = 0;
+        pageCount = 0;
+        hourCount = 0;
+        offsetsByUser.clear();
+        cachedPages.clear();
+        release();
+    }
+
+    public synchronized Log get(int record) throws IOException, ParseException {
+        if (buffer == null) {
+            map();
+        }
+        if (record < 0 || record >= recordCount) {
+            throw new IndexOutOfBoundsException("Record: " + record + ", Records: " + recordCount);
+        }
+        int page = record / pageSize;
+        Log[] logs = cachedPages.get(page);
+        if (logs == null) {
+            logs = decodePage(page);
+            cachedPages.put(page, logs);
+        }
+        return logs[record % pageSize];
+    }
+
+    // The records of the user from fromRecord (inclusive) to toRecord (exclusive), oldest first
+    public synchronized List<Log> findByUserId(int userId, int fromRecord, int toRecord)
+            throws IOException, ParseException {
+        if (buffer == null) {
+            map();
+        }
+        List<Log> logs = new ArrayList<>();
+        Offsets offsets = offsetsByUser.get(userId);
+        if (offsets == null || fromRecord >= toRecord) {
+            return logs;
+        }
+        int end = offsetOf(toRecord);
+        for (int index = offsets.firstAtLeast(offsetOf(fromRecord)); index < offsets.size; index++) {
+            if (offsets.offsets[index] >= end) {
+                break;
+            }
+            logs.add(decodeAt(offsets.offsets[index]));
+        }
+        return logs;
+    }
+
+    // The first record at or after the time, or size() if there is none
+    public int firstRecordFrom(long epochMillis) throws IOException, ParseException {
+        int index;
+        int end;
+        synchronized (this) {
+            if (buffer == null) {
+                map();
+            }
+            long hour = Math.floorDiv(epochMillis, millisPerHour);
+            index = Arrays.binarySearch(hours, 0, hourCount, hour);
+            if (index < 0) {
+                index = -index - 1;
+                // No record in that hour, so the next hour that has one starts at or after the time
+                return index == hourCount ? recordCount : hourFirstRecords[index];
+            }
+            end = index + 1 < hourCount ? hourFirstRecords[index + 1] : recordCount;
+            index = hourFirstRecords[index];
+        }
+        for (int record = index; record < end; record++) {
+            if (get(record).getTimestamp().getTime() >= epochMillis) {
+                return record;
+            }
+        }
+        return end;
+    }
+
+    private synchronized void release() {
+        if (buffer != null) {
+            RecordCodec.unmap(buffer);
+            buffer = null;
+        }
+    }
+
+    private synchronized void map() throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException(file + " is too large to be mapped");
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        index();
+    }
+
+    private void index() {
+        int limit = buffer.limit();
+        int position = indexedEnd;
+        while (position < limit && recordCount < recordLimit) {
+            byte value = buffer.get(position);
+            // Blank lines between records are skipped, as when the file is loaded
+            if (value == '\n' || value == '\r') {
+                position++;
+                continue;
+            }
+            if (recordCount % pageSize == 0) {
+                if (pageCount == pageOffsets.length) {
+                    pageOffsets = Arrays.copyOf(pageOffsets, pageCount * 2);
+                }
+                pageOffsets[pageCount++] = position;
+            }
+            long hour = hourOf(position);
+            if (hour != Long.MIN_VALUE && (hourCount == 0 || hour > hours[hourCount - 1])) {
+                if (hourCount == hours.length) {
+                    hours = Arrays.copyOf(hours, hourCount * 2);
+                    hourFirstRecords = Arrays.copyOf(hourFirstRecords, hourCount * 2);
+                }
+                hours[hourCount] = hour;
+                hourFirstRecords[hourCount] = recordCount;
+                hourCount++;
+            }
+            int start = position;
+            int lastSeparator = -1;
+            while (position < limit && buffer.get(position) != '\n') {
+                if (buffer.get(position) == '|') {
+                    lastSeparator = position;
+                }
+                position++;
+            }
+            // The user ID is the last field, and digits are never escaped
+            if (lastSeparator >= 0) {
+                offsetsByUser.computeIfAbsent(userIdOf(lastSeparator + 1, position), ignored -> new Offsets())
+                        .add(start);
+            }
+            recordCount++;
+            indexedEnd = position;
+        }
+    }
+
+    // The hour of the ISO timestamp starting the record (yyyy-MM-ddTHH...), or Long.MIN_VALUE for other layouts
+    private long hourOf(int position) {
+        if (position + 13 > buffer.limit() || buffer.get(position + 4) != '-' || buffer.get(position + 10) != 'T') {
+            return Long.MIN_VALUE;
+        }
+        int year = digits(position, 4);
+        int month = digits(position + 5, 2);
+        int day = digits(position + 8, 2);
+        int hour = digits(position + 11, 2);
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > 31 || hour < 0 || hour > 23) {
+            return Long.MIN_VALUE;
+        }
+        return RecordCodec.epochDay(year, month, day) * 24 + hour;
+    }
+
+    private int digits(int position, int count) {
+        int value = 0;
+        for (int index = position; index < position + count; index++) {
+            byte digit = buffer.get(index);
+            if (digit < '0' || digit > '9') {
+                return -1;
+            }
+            value = value * 10 + (digit - '0');
+        }
+        return value;
+    }
+
+    private int userIdOf(int position, int end) {
+        boolean negative = position < end && buffer.get(position) == '-';
+        int value = 0;
+        for (int index = negative ? position + 1 : position; index < end; index++) {
+            byte digit = buffer.get(index);
+            if (digit >= '0' && digit <= '9') {
+                value = value * 10 + (digit - '0');
+            }
+        }
+        return negative ? -value : value;
+    }
+
+    // Where the record starts, found from the start of its page; Integer.MAX_VALUE past the last record
+    private int offsetOf(int record) {
+        if (record >= recordCount) {
+            return Integer.MAX_VALUE;
+        }
+        int position = pageOffsets[record / pageSize];
+        for (int skipped = 0; skipped < record % pageSize; skipped++) {
+            while (buffer.get(position) != '\n') {
+                position++;
+            }
+            while (buffer.get(position) == '\n' || buffer.get(position) == '\r') {
+                position++;
+            }
+        }
+        return position;
+    }
+
+    private Log decodeAt(int start) throws ParseException {
+        int end = start;
+        while (end < indexedEnd && buffer.get(end) != '\n') {
+            end++;
+        }
+        byte[] data = new byte[end - start];
+        ByteBuffer recordBuffer = buffer.duplicate();
+        recordBuffer.position(start);
+        recordBuffer.get(data);
+        return IOWriterReader.parseLog(new RecordCodec.Cursor(data, data.length));
+    }
+
+    private Log[] decodePage(int page) throws IOException, ParseException {
+        int start = pageOffsets[page];
+        int end = page + 1 < pageCount ? pageOffsets[page + 1] : indexedEnd;
+        byte[] data = new byte[end - start];
+        ByteBuffer pageBuffer = buffer.duplicate();
+        pageBuffer.position(start);
+        pageBuffer.get(data);
+        Log[] logs = new Log[Math.min(pageSize, recordCount - page * pageSize)];
+        RecordCodec.Cursor cursor = new RecordCodec.Cursor(data, data.length);
+        for (int i = 0; i < logs.length && cursor.hasNext(); i++) {
+            logs[i] = IOWriterReader.parseLog(cursor);
+            cursor.endRecord();
+        }
+        return logs;
+    }
+}
@@ -0,0 +1,318 @@
+package model;
+
+import javafx.collections.ListChangeListener;
+import model.objects.Log;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class LogIndex {
+    // Time-ordered index over the log lists, for audit queries by time, by user and by kind of log ("LoginLog",
+    // "ProductLog", ...) without going through every entry. Each ordering is a timeline: entries sorted by
+    // timestamp in chunks of primitive arrays, so finding a time is a binary search over the chunks and then within
+    // one, and new entries, which are nearly always the latest, are appended to the last chunk.
+    // One timeline holds every entry; each user and each kind has its own as well. An entry is its list and its
+    // position there, and Logs are only built for the entries a query returns. Logs are only ever appended, so
+    // the index follows additions and is rebuilt when an entry is removed or replaced.
+    // Only the rows a list holds in memory are indexed. Its saved rows are in time order in the log file, so a
+    // time range of them is found through the file's own index and counted without reading them; the file also
+    // indexes them by user, so a query by user only reads that user's rows.
+    private static final int chunkCapacity = 512;
+
+    private final List<String> kinds = new ArrayList<>();
+    private final List<LogList> lists = new ArrayList<>();
+    private final Timeline allLogs = new Timeline();
+    private final Map<Integer, Timeline> logsByUser = new HashMap<>();
+    private final Map<String, Timeline> logsByKind = new HashMap<>();
+    // The saved row count of each list when the index was built; the rows before it are not indexed
+    private final List<Integer> savedCounts = new ArrayList<>();
+
+    // kinds maps each kind to its list, e.g. "LoginLog" to Log.loginLogs
+    public LogIndex(Map<String, LogList> kinds) {
+        for (Map.Entry<String, LogList> kind: kinds.entrySet()) {
+            int kindNumber = this.kinds.size();
+            LogList list = kind.getValue();
+            this.kinds.add(kind.getKey());
+            lists.add(list);
+            savedCounts.add(0);
+            logsByKind.put(kind.getKey(), new Timeline());
+            list.addListener((ListChangeListener<Log>) change -> {
+                while (change.next()) {
+                    if (change.wasPermutated()) {
+                        continue;
+                    }
+                    if (change.wasRemoved() || change.getTo() != list.size()) {
+                        rebuild();
+                        return;
+                    }
+                    for (int row = change.getFrom(); row < change.getTo(); row++) {
+                        add(kindNumber, row);
+                    }
+                }
+            });
+        }
+        rebuild();
+    }
+
+    // Entries from (inclusive) to (exclusive), both in epoch milliseconds, oldest first
+    public synchronized List<Log> findBetween(long from, long to) {
+        refresh();
+        List<Log> logs = new ArrayList<>();
+        for (LogList list: lists) {
+            savedLogs(list, from, to, logs);
+        }
+        return inTimeOrder(logs, logsOf(allLogs, from, to));
+    }
+
+    public synchronized List<Log> findByUserId(int userId, long from, long to) {
+        refresh();
+        List<Log> logs = new ArrayList<>();
+        for (LogList list: lists) {
+            logs.addAll(list.savedLogsOf(userId, list.firstSavedIndexFrom(from), list.firstSavedIndexFrom(to)));
+        }
+        Timeline timeline = logsByUser.get(userId);
+        return inTimeOrder(logs, timeline == null ? new ArrayList<>() : logsOf(timeline, from, to));
+    }
+
+    public synchronized List<Log> findByKind(String kind, long from, long to) {
+        refresh();
+        Timeline timeline = logsByKind.get(kind);
+        if (timeline == null) {
+            return new ArrayList<>();
+        }
+        List<Log> logs = new ArrayList<>();
+        savedLogs(lists.get(kinds.indexOf(kind)), from, to, logs);
+        return inTimeOrder(logs, logsOf(timeline, from, to));
+    }
+
+    public synchronized int countByKind(String kind, long from, long to) {
+        refresh();
+        Timeline timeline = logsByKind.get(kind);
+        if (timeline == null) {
+            return 0;
+        }
+        LogList list = lists.get(kinds.indexOf(kind));
+        return list.firstSavedIndexFrom(to) - list.firstSavedIndexFrom(from) + timeline.count(from, to);
+    }
+
+    private List<Log> logsOf(Timeline timeline, long from, long to) {
+        List<Log> logs = new ArrayList<>();
+        timeline.forEach(from, to, (kindNumber, row) -> logs.add(lists.get(kindNumber).get(row)));
+        return logs;
+    }
+
+    private void savedLogs(LogList list, long from, long to, List<Log> logs) {
+        int end = list.firstSavedIndexFrom(to);
+        for (int row = list.firstSavedIndexFrom(from); row < end; row++) {
+            logs.add(list.get(row));
+        }
+    }
+
+    // Saved entries come before the ones in memory when they were logged at the same time
+    private List<Log> inTimeOrder(List<Log> savedLogs, List<Log> logs) {
+        if (savedLogs.isEmpty()) {
+            return logs;
+        }
+        savedLogs.addAll(logs);
+        savedLogs.sort((first, second) -> first.getTimestamp().compareTo(second.getTimestamp()));
+        return savedLogs;
+    }
+
+    private synchronized void add(int kindNumber, int row) {
+        LogList list = lists.get(kindNumber);
+        if (row < list.getSavedCount()) {
+            return;
+        }
+        long time = list.getTimestamp(row);
+        allLogs.add(time, kindNumber, row);
+        logsByUser.computeIfAbsent(list.getUserId(row), ignored -> new Timeline()).add(time, kindNumber, row);
+        logsByKind.get(kinds.get(kindNumber)).add(time, kindNumber, row);
+    }
+
+    // A snapshot hands rows over to the file without changing the list, which leaves them indexed twice
+    private void refresh() {
+        for (int kindNumber = 0; kindNumber < lists.size(); kindNumber++) {
+            if (lists.get(kindNumber).getSavedCount() != savedCounts.get(kindNumber)) {
+                rebuild();
+                return;
+            }
+        }
+    }
+
+    private synchronized void rebuild() {
+        allLogs.clear();
+        logsByUser.clear();
+        for (int kindNumber = 0; kindNumber < kinds.size(); kindNumber++) {
+            LogList list = lists.get(kindNumber);
+            logsByKind.get(kinds.get(kindNumber)).clear();
+            savedCounts.set(kindNumber, list.getSavedCount());
+            for (int row = list.getSavedCount(); row < list.size(); row++) {
+                add(kindNumber, row);
+            }
+        }
+    }
+
+    private interface EntryConsumer {
+        void accept(int kindNumber, int row);
+    }
+
+    private static class Chunk {
+        private final long[] times = new long[chunkCapacity];
+        private final byte[] kindNumbers = new byte[chunkCapacity];
+        private final int[] rows = new int[chunkCapacity];
+        private int size;
+
+        private long firstTime() {
+            return times[0];
+        }
+
+        private long lastTime() {
+            return times[size - 1];
+        }
+
+        // Index of the first time > value
+        private int firstAfter(long value) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (times[middle] <= value) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+
+        // Index of the first time >= value
+        private int firstAtLeast(long value) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (times[middle] < value) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+    }
+
+    private static class Timeline {
+        private final List<Chunk> chunks = new ArrayList<>();
+
+        private void clear() {
+            chunks.clear();
+        }
+
+        private void add(long time, int kindNumber, int row) {
+            if (chunks.isEmpty()) {
+                chunks.add(new Chunk());
+            }
+            // After any equal times, so entries with the same time stay in the order they were added
+            int chunkIndex = chunks.size() - 1;
+            Chunk chunk = chunks.get(chunkIndex);
+            if (chunk.size > 0 && time < chunk.lastTime()) {
+                chunkIndex = Math.max(0, lastChunkStartingAtOrBefore(time));
+                chunk = chunks.get(chunkIndex);
+            }
+            int index = chunk.firstAfter(time);
+            if (chunk.size == chunkCapacity && index == chunk.size && chunkIndex == chunks.size() - 1) {
+                // Appending: start a new chunk rather than leave two half-full ones behind
+                chunk = new Chunk();
+                chunks.add(chunk);
+                index = 0;
+            } else if (chunk.size == chunkCapacity) {
+                Chunk upperHalf = split(chunkIndex);
+                if (index > chunk.size) {
+                    index -= chunk.size;
+                    chunk = upperHalf;
+                }
+            }
+            System.arraycopy(chunk.times, index, chunk.times, index + 1, chunk.size - index);
+            System.arraycopy(chunk.kindNumbers, index, chunk.kindNumbers, index + 1, chunk.size - index);
+            System.arraycopy(chunk.rows, index, chunk.rows, index + 1, chunk.size - index);
+            chunk.times[index] = time;
+            chunk.kindNumbers[index] = (byte) kindNumber;
+            chunk.rows[index] = row;
+            chunk.size++;
+        }
+
+        private void forEach(long from, long to, EntryConsumer consumer) {
+            for (int chunkIndex = firstChunkEndingAtOrAfter(from); chunkIndex < chunks.size(); chunkIndex++) {
+                Chunk chunk = chunks.get(chunkIndex);
+                for (int index = chunk.firstAtLeast(from); index < chunk.size; index++) {
+                    if (chunk.times[index] >= to) {
+                        return;
+                    }
+                    consumer.accept(chunk.kindNumbers[index], chunk.rows[index]);
+                }
+            }
+        }
+
+        // Whole chunks inside the range are counted by their size
+        private int count(long from, long to) {
+            int count = 0;
+            for (int chunkIndex = firstChunkEndingAtOrAfter(from); chunkIndex < chunks.size(); chunkIndex++) {
+                Chunk chunk = chunks.get(chunkIndex);
+                if (chunk.firstTime() >= to) {
+                    break;
+                }
+                if (chunk.lastTime() < to) {
+                    count += chunk.size - chunk.firstAtLeast(from);
+                } else {
+                    return count + chunk.firstAtLeast(to) - chunk.firstAtLeast(from);
+                }
+            }
+            return count;
+        }
+
+        private int firstChunkEndingAtOrAfter(long time) {
+            int low = 0;
+            int high = chunks.size();
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (chunks.get(middle).lastTime() < time) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+
+        // -1 when every chunk starts later
+        private int lastChunkStartingAtOrBefore(long time) {
+            int low = 0;
+            int high = chunks.size();
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (chunks.get(middle).firstTime() <= time) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low - 1;
+        }
+
+        // Moves the upper half of a full chunk into a new chunk after it
+        private Chunk split(int chunkIndex) {
+            Chunk chunk = chunks.get(chunkIndex);
+            Chunk upperHalf = new Chunk();
+            int half = chunk.size / 2;
+            upperHalf.size = chunk.size - half;
+            System.arraycopy(chunk.times, half, upperHalf.times, 0, upperHalf.size);
+            System.arraycopy(chunk.kindNumbers, half, upperHalf.kindNumbers, 0, upperHalf.size);
+            System.arraycopy(chunk.rows, half, upperHalf.rows, 0, upperHalf.size);
+            chunk.size = half;
+            chunks.add(chunkIndex + 1, upperHalf);
+            return upperHalf;
+        }
+    }
+}
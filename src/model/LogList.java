@@ -0,0 +1,376 @@
+package model;
+
+import javafx.collections.ModifiableObservableListBase;
+import model.objects.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class LogList extends ModifiableObservableListBase<Log> {
+    // Observable list of logs stored by column instead of as Log objects: per entry a long timestamp, an action
+    // code, a subject and the user ID, in chunks of primitive arrays. An action is split into a known prefix
+    // ("Added product: ", "Logged in", ...), kept as its code, and the rest (usually a name), kept once in a
+    // table shared by every LogList and referred to by number. This takes about 17 bytes an entry against well
+    // over a hundred for a Log with its Date and action string.
+    // get() builds a new Log each time, so a table only creates Logs for the rows it shows. The Log is a copy:
+    // changing it does not change the list, set() does.
+    // Rows already saved in the log file are not held at all: after attach() they are read from the file (see
+    // LogFile) and only the rows logged since are kept in the chunks. Once a snapshot has written them, markSaved()
+    // hands those rows over to the file as well. Changing a saved row brings the saved rows back into memory first.
+    private static final int chunkShift = 12;
+    private static final int chunkCapacity = 1 << chunkShift;
+    // Code 0 keeps the whole action as the subject
+    private static final String[] actionPrefixes = {
+            "",
+            "Logged in",
+            "Logged out",
+            "Added product: ",
+            "Edited product: ",
+            "Deleted product: ",
+            "Imported ",
+            "Added category: ",
+            "Deleted category: ",
+            "Added catalogue: ",
+            "Edited catalogue: ",
+            "Deleted catalogue: ",
+            "Exported catalogue as pdf: ",
+            "Exported catalogue as png: ",
+            "Added supplier: ",
+            "Edited supplier: ",
+            "Deleted supplier: ",
+            "Changed supplier status: "
+    };
+    private static final List<String> subjects = new ArrayList<>();
+    private static final Map<String, Integer> subjectNumbers = new HashMap<>();
+
+    private final List<Chunk> chunks = new ArrayList<>();
+    // Rows in the chunks, which follow the savedCount rows read from savedFile
+    private int size;
+    private LogFile savedFile;
+    private int savedCount;
+    // Changes other than appends, so markSaved() can tell the rows written are still the ones in the list
+    private int edits;
+
+    private static class Chunk {
+        private final long[] timestamps = new long[chunkCapacity];
+        private final byte[] actionCodes = new byte[chunkCapacity];
+        private final int[] subjectNumbers = new int[chunkCapacity];
+        private final int[] userIds = new int[chunkCapacity];
+    }
+
+    @Override
+    public Log get(int index) {
+        checkIndex(index);
+        if (index < savedCount) {
+            return readSaved(index);
+        }
+        index -= savedCount;
+        Chunk chunk = chunks.get(index >>> chunkShift);
+        int row = index & (chunkCapacity - 1);
+        return new Log(new Date(chunk.timestamps[row]), action(chunk.actionCodes[row], chunk.subjectNumbers[row]),
+                chunk.userIds[row]);
+    }
+
+    // The column values, without building a Log for a row in memory
+    public long getTimestamp(int index) {
+        checkIndex(index);
+        if (index < savedCount) {
+            return readSaved(index).getTimestamp().getTime();
+        }
+        index -= savedCount;
+        return chunks.get(index >>> chunkShift).timestamps[index & (chunkCapacity - 1)];
+    }
+
+    public int getUserId(int index) {
+        checkIndex(index);
+        if (index < savedCount) {
+            return readSaved(index).getUserId();
+        }
+        index -= savedCount;
+        return chunks.get(index >>> chunkShift).userIds[index & (chunkCapacity - 1)];
+    }
+
+    @Override
+    public int size() {
+        return savedCount + size;
+    }
+
+    // The first row logged at or after the time, or size() if there is none
+    public int firstIndexFrom(long epochMillis) {
+        int index = firstSavedIndexFrom(epochMillis);
+        if (index < savedCount) {
+            return index;
+        }
+        for (index = savedCount; index < size(); index++) {
+            if (getTimestamp(index) >= epochMillis) {
+                return index;
+            }
+        }
+        return size();
+    }
+
+    // Serves the records in the file as the saved rows; called on an empty list when the logs are loaded
+    public void attach(LogFile file) {
+        if (!isEmpty()) {
+            throw new IllegalStateException("Logs are already loaded");
+        }
+        savedFile = file;
+        savedCount = file.size();
+        if (savedCount > 0) {
+            beginChange();
+            nextAdd(0, savedCount);
+            endChange();
+        }
+    }
+
+    // The snapshot taken after editCount edits wrote the first count rows to the file, rewriting it when rewritten.
+    // The rows are dropped from memory unless the list was edited since, in which case they are kept until the
+    // rewrite that edit leads to.
+    public void markSaved(File file, int count, boolean rewritten, int editCount) throws IOException {
+        if (editCount != edits || count > size() || count < savedCount) {
+            return;
+        }
+        if (savedFile == null) {
+            savedFile = LogFile.open(file);
+            if (savedFile.size() != count) {
+                savedFile.reset(count);
+            }
+        } else if (rewritten) {
+            savedFile.reset(count);
+        } else {
+            savedFile.extend(count - savedCount);
+        }
+        int written = count - savedCount;
+        move(written, 0, size - written);
+        setSize(size - written);
+        savedCount = count;
+    }
+
+    public int getEditCount() {
+        return edits;
+    }
+
+    int getSavedCount() {
+        return savedCount;
+    }
+
+    // The first saved row at or after the time, or the saved row count if there is none
+    int firstSavedIndexFrom(long epochMillis) {
+        if (savedCount == 0) {
+            return 0;
+        }
+        try {
+            return Math.min(savedFile.firstRecordFrom(epochMillis), savedCount);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (ParseException e) {
+            throw new IllegalStateException("Unreadable record in a log file", e);
+        }
+    }
+
+    // The saved rows of the user from fromIndex (inclusive) to toIndex (exclusive), read through the file's user
+    // index
+    List<Log> savedLogsOf(int userId, int fromIndex, int toIndex) {
+        if (savedCount == 0) {
+            return new ArrayList<>();
+        }
+        try {
+            return savedFile.findByUserId(userId, fromIndex, Math.min(toIndex, savedCount));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (ParseException e) {
+            throw new IllegalStateException("Unreadable record in a log file", e);
+        }
+    }
+
+    // ModifiableObservableListBase reports the changes, a bulk load being a single addition
+    @Override
+    protected void doAdd(int index, Log log) {
+        if (index < savedCount) {
+            materialize();
+        }
+        if (index != size()) {
+            edits++;
+        }
+        index -= savedCount;
+        if (size == chunks.size() << chunkShift) {
+            chunks.add(new Chunk());
+        }
+        // Logs are appended, so this rarely moves anything
+        move(index, index + 1, size - index);
+        size++;
+        write(index, log);
+    }
+
+    @Override
+    protected Log doSet(int index, Log log) {
+        Log previous = get(index);
+        if (index < savedCount) {
+            materialize();
+        }
+        edits++;
+        write(index - savedCount, log);
+        return previous;
+    }
+
+    @Override
+    protected Log doRemove(int index) {
+        Log removed = get(index);
+        if (index < savedCount) {
+            materialize();
+        }
+        edits++;
+        index -= savedCount;
+        move(index + 1, index, size - index - 1);
+        setSize(size - 1);
+        return removed;
+    }
+
+    // Moves the later entries once rather than once for every entry removed
+    @Override
+    protected void removeRange(int fromIndex, int toIndex) {
+        if (fromIndex >= toIndex) {
+            return;
+        }
+        List<Log> removed = new ArrayList<>(subList(fromIndex, toIndex));
+        if (fromIndex < savedCount) {
+            materialize();
+        }
+        edits++;
+        fromIndex -= savedCount;
+        toIndex -= savedCount;
+        beginChange();
+        nextRemove(fromIndex + savedCount, removed);
+        move(toIndex, fromIndex, size - toIndex);
+        setSize(size - (toIndex - fromIndex));
+        endChange();
+    }
+
+    @Override
+    public void clear() {
+        removeRange(0, size());
+    }
+
+    private void setSize(int newSize) {
+        size = newSize;
+        while (chunks.size() > (size + chunkCapacity - 1) >>> chunkShift) {
+            chunks.remove(chunks.size() - 1);
+        }
+    }
+
+    // Reads the saved rows into the chunks, ahead of the rows already there, and stops reading the file
+    private void materialize() {
+        if (savedCount == 0) {
+            return;
+        }
+        while (chunks.size() << chunkShift < savedCount + size) {
+            chunks.add(new Chunk());
+        }
+        move(0, savedCount, size);
+        for (int index = 0; index < savedCount; index++) {
+            write(index, readSaved(index));
+        }
+        size += savedCount;
+        savedCount = 0;
+    }
+
+    private Log readSaved(int index) {
+        try {
+            return savedFile.get(index);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (ParseException e) {
+            throw new IllegalStateException("Unreadable record in a log file", e);
+        }
+    }
+
+    private void write(int index, Log log) {
+        Chunk chunk = chunks.get(index >>> chunkShift);
+        int row = index & (chunkCapacity - 1);
+        String action = log.getAction() == null ? "" : log.getAction();
+        int actionCode = actionCode(action);
+        chunk.timestamps[row] = log.getTimestamp().getTime();
+        chunk.actionCodes[row] = (byte) actionCode;
+        chunk.subjectNumbers[row] = subjectNumber(action.substring(actionPrefixes[actionCode].length()));
+        chunk.userIds[row] = log.getUserId();
+    }
+
+    // Copies count entries from one position to another; the two ranges may overlap
+    private void move(int from, int to, int count) {
+        if (from > to) {
+            while (count > 0) {
+                int rowsLeft = chunkCapacity - Math.max(from & (chunkCapacity - 1), to & (chunkCapacity - 1));
+                int length = Math.min(count, rowsLeft);
+                copy(from, to, length);
+                from += length;
+                to += length;
+                count -= length;
+            }
+        } else if (from < to) {
+            while (count > 0) {
+                int lastFromRow = (from + count - 1) & (chunkCapacity - 1);
+                int lastToRow = (to + count - 1) & (chunkCapacity - 1);
+                int length = Math.min(count, Math.min(lastFromRow, lastToRow) + 1);
+                copy(from + count - length, to + count - length, length);
+                count -= length;
+            }
+        }
+    }
+
+    // Both ranges lie within one chunk each
+    private void copy(int from, int to, int length) {
+        Chunk fromChunk = chunks.get(from >>> chunkShift);
+        Chunk toChunk = chunks.get(to >>> chunkShift);
+        int fromRow = from & (chunkCapacity - 1);
+        int toRow = to & (chunkCapacity - 1);
+        System.arraycopy(fromChunk.timestamps, fromRow, toChunk.timestamps, toRow, length);
+        System.arraycopy(fromChunk.actionCodes, fromRow, toChunk.actionCodes, toRow, length);
+        System.arraycopy(fromChunk.subjectNumbers, fromRow, toChunk.subjectNumbers, toRow, length);
+        System.arraycopy(fromChunk.userIds, fromRow, toChunk.userIds, toRow, length);
+    }
+
+    // The longest prefix the action starts with
+    private static int actionCode(String action) {
+        int actionCode = 0;
+        for (int code = 1; code < actionPrefixes.length; code++) {
+            if (action.startsWith(actionPrefixes[code])
+                    && actionPrefixes[code].length() > actionPrefixes[actionCode].length()) {
+                actionCode = code;
+            }
+        }
+        return actionCode;
+    }
+
+    private static String action(byte actionCode, int subjectNumber) {
+        String subject;
+        synchronized (subjects) {
+            subject = subjects.get(subjectNumber);
+        }
+        return subject.isEmpty() ? actionPrefixes[actionCode] : actionPrefixes[actionCode] + subject;
+    }
+
+    private static int subjectNumber(String subject) {
+        synchronized (subjects) {
+            Integer number = subjectNumbers.get(subject);
+            if (number == null) {
+                number = subjects.size();
+                subjects.add(subject);
+                subjectNumbers.put(subject, number);
+            }
+            return number;
+        }
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+        }
+    }
+}
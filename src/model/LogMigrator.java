@@ -0,0 +1,48 @@
+package model;
+
+import model.objects.Log;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.text.ParseException;
+import java.util.List;
+
+public class LogMigrator {
+    // Log files used to store Date.toString() timestamps ("Mon Nov 25 05:47:15 MYT 2019"), which depend on the
+    // time zone names of the machine and need a SimpleDateFormat per record. They are now written as UTC
+    // ISO-8601 (see RecordCodec.formatInstant). A file still starting with an old timestamp is read once with the
+    // old parser and rewritten in the new format. The parser keeps accepting both, so a file that mixes the two
+    // (old records followed by new appends) also loads; it is rewritten as a whole at the next start.
+
+    public static void migrate() throws IOException, ParseException {
+        for (File file: new File[] {IOWriterReader.loginLog, IOWriterReader.productLog, IOWriterReader.catalogueLog,
+                IOWriterReader.supplierLog}) {
+            migrate(file);
+        }
+    }
+
+    // Returns whether the file was rewritten
+    public static boolean migrate(File file) throws IOException, ParseException {
+        if (!file.exists() || !hasLegacyRecords(file)) {
+            return false;
+        }
+        List<Log> logs = RecordCodec.readParallel(file, IOWriterReader::parseLog);
+        SnapshotWriter.writeAtomically(file, logs);
+        return true;
+    }
+
+    // Old records start with the day of the week, new ones with the year
+    private static boolean hasLegacyRecords(File file) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isEmpty()) {
+                    return !Character.isDigit(line.charAt(0));
+                }
+            }
+        }
+        return false;
+    }
+}
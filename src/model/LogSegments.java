@@ -0,0 +1,422 @@
+package model;
+
+import model.objects.Log;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.text.ParseException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+public class LogSegments {
+    // Splits each log into monthly segments, so the log files stop growing forever. The log file itself
+    // (Login.log, ...) is the active segment: it is what is loaded at startup and appended to. At startup, whole
+    // months before the current one are moved out of it into sealed segments next to it (Login.2019-11.log.gz),
+    // which are never written again. Each log has a manifest (Login.segments.txt) with the month, whether it is
+    // compressed, the first and last timestamp, the record count and the record count of each user of every
+    // sealed segment, and a summary (Login.summary.txt) with the number of records of every day that was sealed.
+    // Queries for older logs read only the segments whose time range they touch, or that hold records of the
+    // user they ask for; counts per day come from the summary without reading any segment. Segments older than retainedMonths are deleted, leaving their counts
+    // in the summary, so the disk used stays bounded by the retention.
+    // Months follow the time zone of the machine, as the days the dashboard counts do.
+    private static final boolean compressSealedSegments = true;
+    private static final int retainedMonths = 24;
+
+    private static final Map<String, LogSegments> segmentsByKind = new LinkedHashMap<>();
+
+    static {
+        segmentsByKind.put("LoginLog", new LogSegments(IOWriterReader.loginLog));
+        segmentsByKind.put("ProductLog", new LogSegments(IOWriterReader.productLog));
+        segmentsByKind.put("CatalogueLog", new LogSegments(IOWriterReader.catalogueLog));
+        segmentsByKind.put("SupplierLog", new LogSegments(IOWriterReader.supplierLog));
+    }
+
+    private final File activeFile;
+    private final File manifestFile;
+    private final File summaryFile;
+    // By month, oldest first
+    private final TreeMap<YearMonth, Segment> segments = new TreeMap<>();
+    private final TreeMap<LocalDate, Integer> dailyCounts = new TreeMap<>();
+
+    private static class Segment {
+        private final YearMonth month;
+        private final boolean compressed;
+        private final long firstTimestamp;
+        private final long lastTimestamp;
+        private final int count;
+        // The users with records in the segment, ascending, and their record counts; null for a segment listed
+        // before the manifest had them
+        private final int[] userIds;
+        private final int[] userCounts;
+
+        private Segment(YearMonth month, boolean compressed, long firstTimestamp, long lastTimestamp, int count,
+                        int[] userIds, int[] userCounts) {
+            this.month = month;
+            this.compressed = compressed;
+            this.firstTimestamp = firstTimestamp;
+            this.lastTimestamp = lastTimestamp;
+            this.count = count;
+            this.userIds = userIds;
+            this.userCounts = userCounts;
+        }
+
+        private boolean mayHold(int userId) {
+            return userIds == null || Arrays.binarySearch(userIds, userId) >= 0;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder userIdsString = new StringBuilder();
+            StringBuilder userCountsString = new StringBuilder();
+            for (int user = 0; userIds != null && user < userIds.length; user++) {
+                if (user > 0) {
+                    userIdsString.append("<>");
+                    userCountsString.append("<>");
+                }
+                userIdsString.append(userIds[user]);
+                userCountsString.append(userCounts[user]);
+            }
+            return month + "|" + compressed + "|" + RecordCodec.formatInstant(firstTimestamp) + "|"
+                    + RecordCodec.formatInstant(lastTimestamp) + "|" + count
+                    + (userIds == null ? "" : "|" + userIdsString + "|" + userCountsString);
+        }
+    }
+
+    private LogSegments(File activeFile) {
+        this.activeFile = activeFile;
+        manifestFile = sibling(".segments.txt");
+        summaryFile = sibling(".summary.txt");
+    }
+
+    // Seals the months before the current one and applies the retention; called when the application starts,
+    // before the logs are loaded. The command line tools leave the segments as they are.
+    public static void rotate() throws IOException, ParseException {
+        // Sealing reads the records, so logs still in the old timestamp format are rewritten first
+        LogMigrator.migrate();
+        YearMonth currentMonth = YearMonth.now();
+        long sealBefore = startOf(currentMonth);
+        // Logs still in the journal stay in the active segment, where replaying the journal looks for them
+        long journaled = Journal.earliestLogTimestamp();
+        if (journaled < sealBefore) {
+            sealBefore = startOf(monthOf(journaled));
+        }
+        for (LogSegments logSegments: segmentsByKind.values()) {
+            logSegments.rotate(sealBefore, currentMonth.minusMonths(retainedMonths));
+        }
+    }
+
+    // Sealed logs of every kind from (inclusive) to (exclusive), both in epoch milliseconds, oldest first
+    public static List<Log> findBetween(long from, long to) throws IOException, ParseException {
+        List<Log> logs = new ArrayList<>();
+        for (LogSegments logSegments: segmentsByKind.values()) {
+            logs.addAll(logSegments.find(from, to));
+        }
+        logs.sort((first, second) -> first.getTimestamp().compareTo(second.getTimestamp()));
+        return logs;
+    }
+
+    public static List<Log> findByKind(String kind, long from, long to) throws IOException, ParseException {
+        LogSegments logSegments = segmentsByKind.get(kind);
+        return logSegments == null ? new ArrayList<>() : logSegments.find(from, to);
+    }
+
+    // Sealed logs of every kind by the user, oldest first; only the segments holding records of the user are read
+    public static List<Log> findByUserId(int userId) throws IOException, ParseException {
+        List<Log> logs = new ArrayList<>();
+        for (LogSegments logSegments: segmentsByKind.values()) {
+            logs.addAll(logSegments.find(userId));
+        }
+        logs.sort((first, second) -> first.getTimestamp().compareTo(second.getTimestamp()));
+        return logs;
+    }
+
+    // The number of sealed logs of the kind from the day, including those of segments past the retention
+    public static int countByKindOn(String kind, LocalDate date) {
+        LogSegments logSegments = segmentsByKind.get(kind);
+        if (logSegments == null) {
+            return 0;
+        }
+        synchronized (logSegments) {
+            return logSegments.dailyCounts.getOrDefault(date, 0);
+        }
+    }
+
+    // The sealed logs of the kind from the month, or null if that month is not in a segment
+    public static List<Log> findByKindIn(String kind, YearMonth month) throws IOException, ParseException {
+        LogSegments logSegments = segmentsByKind.get(kind);
+        if (logSegments == null) {
+            return null;
+        }
+        Segment segment;
+        synchronized (logSegments) {
+            segment = logSegments.segments.get(month);
+        }
+        return segment == null ? null : logSegments.read(logSegments.fileOf(segment.month, segment.compressed));
+    }
+
+    private synchronized void rotate(long sealBefore, YearMonth oldestRetained) throws IOException, ParseException {
+        segments.clear();
+        dailyCounts.clear();
+        readManifest();
+        readSummary();
+
+        boolean changed = false;
+        // Segments sealed before the manifest listed their users are read once to list them
+        for (Segment segment: new ArrayList<>(segments.values())) {
+            if (segment.userIds == null) {
+                segments.put(segment.month, withUsers(segment.month, segment.compressed,
+                        read(fileOf(segment.month, segment.compressed))));
+                changed = true;
+            }
+        }
+        if (activeFile.exists() && firstTimestamp() < sealBefore) {
+            seal(sealBefore);
+            changed = true;
+        }
+
+        List<YearMonth> expired = new ArrayList<>(segments.headMap(oldestRetained).keySet());
+        for (YearMonth month: expired) {
+            Files.deleteIfExists(fileOf(month, segments.remove(month).compressed).toPath());
+            changed = true;
+        }
+        if (changed) {
+            SnapshotWriter.writeAtomically(manifestFile, new ArrayList<>(segments.values()));
+        }
+    }
+
+    // Moves the records before sealBefore out of the active segment, a segment per month
+    private void seal(long sealBefore) throws IOException, ParseException {
+        List<Log> logs = RecordCodec.readMapped(activeFile, IOWriterReader::parseLog);
+        // Logs are appended in time order, so the records to seal are the ones up to the first that is not
+        int sealed = 0;
+        while (sealed < logs.size() && logs.get(sealed).getTimestamp().getTime() < sealBefore) {
+            sealed++;
+        }
+        Map<YearMonth, List<Log>> logsByMonth = new TreeMap<>();
+        for (Log log: logs.subList(0, sealed)) {
+            logsByMonth.computeIfAbsent(monthOf(log.getTimestamp().getTime()), month -> new ArrayList<>()).add(log);
+        }
+
+        // Segments first and the active segment last, so a crash in between leaves the records in both rather
+        // than in neither; sealing them again skips what the segment already has
+        for (Map.Entry<YearMonth, List<Log>> entry: logsByMonth.entrySet()) {
+            sealMonth(entry.getKey(), entry.getValue());
+        }
+        SnapshotWriter.writeAtomically(manifestFile, new ArrayList<>(segments.values()));
+        List<String> summary = new ArrayList<>();
+        for (Map.Entry<LocalDate, Integer> dailyCount: dailyCounts.entrySet()) {
+            summary.add(dailyCount.getKey() + "|" + dailyCount.getValue());
+        }
+        SnapshotWriter.writeAtomically(summaryFile, summary);
+        SnapshotWriter.writeAtomically(activeFile, logs.subList(sealed, logs.size()));
+    }
+
+    private void sealMonth(YearMonth month, List<Log> logs) throws IOException, ParseException {
+        List<Log> monthLogs = new ArrayList<>();
+        Segment existing = segments.get(month);
+        File existingFile = existing == null ? null : fileOf(month, existing.compressed);
+        if (existingFile == null) {
+            // Written before a crash that kept it out of the manifest
+            for (boolean compressed: new boolean[] {true, false}) {
+                if (fileOf(month, compressed).exists()) {
+                    existingFile = fileOf(month, compressed);
+                }
+            }
+        }
+        if (existingFile != null && existingFile.exists()) {
+            monthLogs.addAll(read(existingFile));
+        }
+        long lastSealed = monthLogs.isEmpty() ? Long.MIN_VALUE
+                : monthLogs.get(monthLogs.size() - 1).getTimestamp().getTime();
+        for (Log log: logs) {
+            if (log.getTimestamp().getTime() > lastSealed) {
+                monthLogs.add(log);
+            }
+        }
+
+        File file = fileOf(month, compressSealedSegments);
+        SnapshotWriter.writeAtomically(file, ByteBuffer.wrap(encode(monthLogs, compressSealedSegments)));
+        if (existingFile != null && !existingFile.equals(file)) {
+            Files.deleteIfExists(existingFile.toPath());
+        }
+        segments.put(month, withUsers(month, compressSealedSegments, monthLogs));
+
+        // The counts of the month are taken again from the whole segment
+        dailyCounts.subMap(month.atDay(1), true, month.atEndOfMonth(), true).clear();
+        for (Log log: monthLogs) {
+            dailyCounts.merge(dayOf(log.getTimestamp().getTime()), 1, Integer::sum);
+        }
+    }
+
+    private List<Log> find(long from, long to) throws IOException, ParseException {
+        List<Segment> overlapping = new ArrayList<>();
+        synchronized (this) {
+            for (Segment segment: segments.values()) {
+                if (segment.firstTimestamp < to && segment.lastTimestamp >= from) {
+                    overlapping.add(segment);
+                }
+            }
+        }
+        List<Log> logs = new ArrayList<>();
+        for (Segment segment: overlapping) {
+            for (Log log: read(fileOf(segment.month, segment.compressed))) {
+                long timestamp = log.getTimestamp().getTime();
+                if (timestamp >= from && timestamp < to) {
+                    logs.add(log);
+                }
+            }
+        }
+        return logs;
+    }
+
+    private static Segment withUsers(YearMonth month, boolean compressed, List<Log> logs) {
+        TreeMap<Integer, Integer> countsByUser = new TreeMap<>();
+        for (Log log: logs) {
+            countsByUser.merge(log.getUserId(), 1, Integer::sum);
+        }
+        int[] userIds = new int[countsByUser.size()];
+        int[] userCounts = new int[countsByUser.size()];
+        int user = 0;
+        for (Map.Entry<Integer, Integer> userCount: countsByUser.entrySet()) {
+            userIds[user] = userCount.getKey();
+            userCounts[user] = userCount.getValue();
+            user++;
+        }
+        return new Segment(month, compressed, logs.get(0).getTimestamp().getTime(),
+                logs.get(logs.size() - 1).getTimestamp().getTime(), logs.size(), userIds, userCounts);
+    }
+
+    private List<Log> find(int userId) throws IOException, ParseException {
+        List<Segment> holding = new ArrayList<>();
+        synchronized (this) {
+            for (Segment segment: segments.values()) {
+                if (segment.mayHold(userId)) {
+                    holding.add(segment);
+                }
+            }
+        }
+        List<Log> logs = new ArrayList<>();
+        for (Segment segment: holding) {
+            for (Log log: read(fileOf(segment.month, segment.compressed))) {
+                if (log.getUserId() == userId) {
+                    logs.add(log);
+                }
+            }
+        }
+        return logs;
+    }
+
+    private List<Log> read(File file) throws IOException, ParseException {
+        if (!file.getName().endsWith(".gz")) {
+            return RecordCodec.readMapped(file, IOWriterReader::parseLog);
+        }
+        byte[] data;
+        try (InputStream input = new GZIPInputStream(new FileInputStream(file))) {
+            data = input.readAllBytes();
+        }
+        List<Log> logs = new ArrayList<>();
+        RecordCodec.Cursor cursor = new RecordCodec.Cursor(data, data.length);
+        while (cursor.hasNext()) {
+            logs.add(IOWriterReader.parseLog(cursor));
+            cursor.endRecord();
+        }
+        return logs;
+    }
+
+    private static byte[] encode(List<Log> logs, boolean compressed) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (OutputStream output = compressed ? new GZIPOutputStream(bytes) : bytes) {
+            for (Log log: logs) {
+                output.write((log + System.lineSeparator()).getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    private long firstTimestamp() throws IOException, ParseException {
+        try (BufferedReader reader = Files.newBufferedReader(activeFile.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isEmpty()) {
+                    return IOWriterReader.parseLog(line).getTimestamp().getTime();
+                }
+            }
+        }
+        return Long.MAX_VALUE;
+    }
+
+    private void readManifest() throws IOException {
+        if (!manifestFile.exists()) {
+            return;
+        }
+        for (String line: Files.readAllLines(manifestFile.toPath(), StandardCharsets.UTF_8)) {
+            if (line.isEmpty()) {
+                continue;
+            }
+            RecordCodec.Cursor cursor = RecordCodec.cursor(line);
+            YearMonth month = YearMonth.parse(cursor.nextText());
+            boolean compressed = cursor.nextBoolean();
+            long firstTimestamp = cursor.nextInstant();
+            long lastTimestamp = cursor.nextInstant();
+            int count = cursor.nextInt();
+            int[] userIds = cursor.hasNext() ? cursor.nextIntArray() : null;
+            int[] userCounts = userIds == null ? null : cursor.nextIntArray();
+            segments.put(month, new Segment(month, compressed, firstTimestamp, lastTimestamp, count, userIds,
+                    userCounts));
+        }
+    }
+
+    private void readSummary() throws IOException {
+        if (!summaryFile.exists()) {
+            return;
+        }
+        for (String line: Files.readAllLines(summaryFile.toPath(), StandardCharsets.UTF_8)) {
+            if (line.isEmpty()) {
+                continue;
+            }
+            RecordCodec.Cursor cursor = RecordCodec.cursor(line);
+            LocalDate date = LocalDate.parse(cursor.nextText());
+            dailyCounts.put(date, cursor.nextInt());
+        }
+    }
+
+    // Login.log becomes Login<suffix>, in the same directory
+    private File sibling(String suffix) {
+        String path = activeFile.getPath();
+        return new File(path.substring(0, path.length() - ".log".length()) + suffix);
+    }
+
+    private File fileOf(YearMonth month, boolean compressed) {
+        return sibling("." + month + (compressed ? ".log.gz" : ".log"));
+    }
+
+    private static YearMonth monthOf(long epochMillis) {
+        return YearMonth.from(dayOf(epochMillis));
+    }
+
+    private static LocalDate dayOf(long epochMillis) {
+        return Instant.ofEpochMilli(epochMillis).atZone(ZoneId.systemDefault()).toLocalDate();
+    }
+
+    private static long startOf(YearMonth month) {
+        return month.atDay(1).atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+}
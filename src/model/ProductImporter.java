@@ -0,0 +1,205 @@
+package model;
+
+import model.objects.*;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public class ProductImporter {
+    // Bulk import of products from a CSV file with the columns
+    //   name,category,supplier,quantity,purchasing price,selling price
+    // where category and supplier are given by name (or ID). A header row is optional.
+    // Rows are validated like the Add Product form; rejected rows are written to "<file>.errors.csv" with the reason.
+    private static final int columnCount = 6;
+    private static final String errorHeader = "line,reason,name,category,supplier,quantity,purchasing price,selling price";
+    private static final String duplicateReason = "Product name has already been used.";
+
+    private final File file;
+    private final File errorFile;
+    private final Map<String, Integer> categoryIds = new HashMap<>();
+    private final Map<String, Integer> supplierIds = new HashMap<>();
+    private final List<Row> accepted = new ArrayList<>();
+    private int rejectedCount;
+
+    private ProductImporter(File file) {
+        this.file = file;
+        this.errorFile = new File(file.getPath() + ".errors.csv");
+    }
+
+    // Copies the category and supplier lookups, so call on the FX thread; read() can then run on any thread
+    public static ProductImporter prepare(File file) {
+        ProductImporter importer = new ProductImporter(file);
+        // Lookups are built once instead of scanning the lists for every row
+        for (Category category: Category.categories) {
+            importer.categoryIds.putIfAbsent(normalise(category.getCategoryName()), category.getCategoryId());
+            importer.categoryIds.putIfAbsent(String.valueOf(category.getCategoryId()), category.getCategoryId());
+        }
+        for (Supplier supplier: Supplier.suppliers) {
+            importer.supplierIds.putIfAbsent(normalise(supplier.getName()), supplier.getSupplierId());
+            importer.supplierIds.putIfAbsent(String.valueOf(supplier.getSupplierId()), supplier.getSupplierId());
+        }
+        return importer;
+    }
+
+    // Reads and validates the whole file without touching the model lists
+    public void read() throws IOException {
+        // Names earlier in the file are checked here, names already in the product list by commit()
+        Set<String> importedNames = new HashSet<>();
+
+        try (Reader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8);
+             BufferedWriter errorWriter = Files.newBufferedWriter(errorFile.toPath(), StandardCharsets.UTF_8)) {
+            errorWriter.write(errorHeader);
+            errorWriter.newLine();
+
+            Csv.RecordReader records = new Csv.RecordReader(reader);
+            List<String> fields;
+            boolean firstRecord = true;
+            while ((fields = records.next()) != null) {
+                if (firstRecord) {
+                    firstRecord = false;
+                    // Spreadsheet programs often start the file with a byte order mark
+                    if (fields.get(0).startsWith("\uFEFF")) {
+                        fields.set(0, fields.get(0).substring(1));
+                    }
+                    if (normalise(fields.get(0)).equals("name")) {
+                        continue;
+                    }
+                }
+                try {
+                    Row row = parse(fields, categoryIds, supplierIds);
+                    if (!importedNames.add(UniqueIndex.normalise(row.name))) {
+                        throw new DuplicateException();
+                    }
+                    row.lineNumber = records.getLineNumber();
+                    row.fields = fields;
+                    accepted.add(row);
+                } catch (DuplicateException exception) {
+                    reject(errorWriter, records.getLineNumber(), duplicateReason, fields);
+                } catch (NumberFormatException exception) {
+                    reject(errorWriter, records.getLineNumber(), "Quantity and prices must be a number.", fields);
+                } catch (NullValueException exception) {
+                    reject(errorWriter, records.getLineNumber(), "All fields must be filled.", fields);
+                } catch (IllegalInputFormatException.Category exception) {
+                    reject(errorWriter, records.getLineNumber(), "Category does not exist.", fields);
+                } catch (IllegalInputFormatException.Supplier exception) {
+                    reject(errorWriter, records.getLineNumber(), "Supplier does not exist.", fields);
+                }
+            }
+        }
+        if (rejectedCount == 0) {
+            Files.delete(errorFile.toPath());
+        }
+    }
+
+    private static class Row {
+        private int lineNumber;
+        private List<String> fields;
+        private String name;
+        private int categoryId;
+        private int supplierId;
+        private int quantity;
+        private double purchasingPrice;
+        private double sellingPrice;
+    }
+
+    private static Row parse(List<String> fields, Map<String, Integer> categoryIds, Map<String, Integer> supplierIds)
+            throws NullValueException, IllegalInputFormatException.Category, IllegalInputFormatException.Supplier {
+        if (fields.size() < columnCount) {
+            throw new NullValueException();
+        }
+        for (int i = 0; i < columnCount; i++) {
+            if (fields.get(i).trim().isEmpty()) {
+                throw new NullValueException();
+            }
+        }
+        Row row = new Row();
+        row.name = fields.get(0).trim();
+        Integer categoryId = categoryIds.get(normalise(fields.get(1)));
+        if (categoryId == null) {
+            throw new IllegalInputFormatException.Category();
+        }
+        Integer supplierId = supplierIds.get(normalise(fields.get(2)));
+        if (supplierId == null) {
+            throw new IllegalInputFormatException.Supplier();
+        }
+        row.categoryId = categoryId;
+        row.supplierId = supplierId;
+        row.quantity = Integer.parseInt(fields.get(3).trim());
+        row.purchasingPrice = Double.parseDouble(fields.get(4).trim());
+        row.sellingPrice = Double.parseDouble(fields.get(5).trim());
+        return row;
+    }
+
+    private static String normalise(String text) {
+        return UniqueIndex.normalise(text);
+    }
+
+    private void reject(BufferedWriter errorWriter, int lineNumber, String reason, List<String> fields) throws IOException {
+        rejectedCount++;
+        List<String> errorFields = new ArrayList<>(Arrays.asList(String.valueOf(lineNumber), reason));
+        errorFields.addAll(fields);
+        errorWriter.write(Csv.join(errorFields));
+        errorWriter.newLine();
+    }
+
+    // Adds the accepted products in one change and logs one entry for the whole import; call on the FX thread.
+    // Rows whose name is in the product list by now are rejected here and added to the error file.
+    public void commit() throws IOException {
+        List<Row> taken = new ArrayList<>();
+        List<Row> added = new ArrayList<>(accepted.size());
+        for (Row row: accepted) {
+            (Product.isNameTaken(row.name) ? taken : added).add(row);
+        }
+        accepted.clear();
+        accepted.addAll(added);
+
+        int productId = IOWriterReader.getProductIds(added.size());
+        List<Product> products = new ArrayList<>(added.size());
+        for (Row row: added) {
+            products.add(new Product(productId++, row.name, row.categoryId, row.supplierId, row.quantity,
+                    row.purchasingPrice, row.sellingPrice));
+        }
+        Product.products.addAll(products);
+        Log.productLogs.add(new Log("Imported " + added.size() + " products from " + file.getName()
+                + (rejectedCount + taken.size() > 0 ? " (" + (rejectedCount + taken.size()) + " rows rejected)" : "")));
+
+        if (!taken.isEmpty()) {
+            boolean newFile = rejectedCount == 0;
+            try (BufferedWriter errorWriter = newFile
+                    ? Files.newBufferedWriter(errorFile.toPath(), StandardCharsets.UTF_8)
+                    : Files.newBufferedWriter(errorFile.toPath(), StandardCharsets.UTF_8, StandardOpenOption.APPEND)) {
+                if (newFile) {
+                    errorWriter.write(errorHeader);
+                    errorWriter.newLine();
+                }
+                for (Row row: taken) {
+                    reject(errorWriter, row.lineNumber, duplicateReason, row.fields);
+                }
+            }
+        }
+    }
+
+    public int getAcceptedCount() {
+        return accepted.size();
+    }
+
+    public int getRejectedCount() {
+        return rejectedCount;
+    }
+
+    public File getErrorFile() {
+        return errorFile;
+    }
+}
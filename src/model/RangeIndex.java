@@ -0,0 +1,261 @@
+package model;
+
+import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableList;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.ToDoubleFunction;
+
+public class RangeIndex<T> {
+    // Range search over a numeric (or date) field: the entities are kept sorted by the field in a primitive array,
+    // so a range is found with two binary searches. The search text is parsed by Range.parse:
+    //   5         equal to 5
+    //   <5  <=5   below 5 / at most 5
+    //   >5  >=5   above 5 / at least 5
+    //   5..10     from 5 to 10, both included; either end may be left out ("5..", "..10")
+    // Dates are written as yyyy-MM-dd and compared by day.
+    // Like SearchIndex, an index is created on the FX thread, sorted by its first search and then kept current by a
+    // list listener and ChangeTracker.update.
+    private static final int rebuildThreshold = 16;
+    private static final Map<ObservableList<?>, Map<String, RangeIndex<?>>> indexes = new IdentityHashMap<>();
+    private static final List<RangeIndex<?>> allIndexes = new CopyOnWriteArrayList<>();
+
+    private final ObservableList<T> list;
+    private final ToDoubleFunction<T> keyOf;
+    // Sorted by key (Double.compare order, so NaN sorts last); entities[i] has keys[i]
+    private double[] keys = new double[0];
+    private Object[] entities = new Object[0];
+    private int size;
+    private final Map<T, Double> indexedKeys = new IdentityHashMap<>();
+    // Rows waiting to be indexed by the first search
+    private List<T> unindexedRows;
+
+    private RangeIndex(ObservableList<T> list, ToDoubleFunction<T> keyOf) {
+        this.list = list;
+        this.keyOf = keyOf;
+        this.unindexedRows = new ArrayList<>(list);
+        list.addListener(this::onChanged);
+    }
+
+    // One index per list and field name; call on the FX thread
+    @SuppressWarnings("unchecked")
+    public static <T> RangeIndex<T> forField(ObservableList<T> list, String field, ToDoubleFunction<T> keyOf) {
+        synchronized (indexes) {
+            Map<String, RangeIndex<?>> fields = indexes.computeIfAbsent(list, ignored -> new HashMap<>());
+            RangeIndex<T> index = (RangeIndex<T>) fields.get(field);
+            if (index == null) {
+                index = new RangeIndex<>(list, keyOf);
+                fields.put(field, index);
+                allIndexes.add(index);
+            }
+            return index;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public static void refresh(Object entity) {
+        for (RangeIndex<?> index: allIndexes) {
+            ((RangeIndex<Object>) index).refreshEntity(entity);
+        }
+    }
+
+    public static class Range {
+        private final double lower;
+        private final boolean lowerInclusive;
+        private final double upper;
+        private final boolean upperInclusive;
+
+        private Range(double lower, boolean lowerInclusive, double upper, boolean upperInclusive) {
+            this.lower = lower;
+            this.lowerInclusive = lowerInclusive;
+            this.upper = upper;
+            this.upperInclusive = upperInclusive;
+        }
+
+        // Returns null when the text is not a range or value, e.g. while it is still being typed
+        public static Range parse(String text) {
+            return parse(text, Double::parseDouble);
+        }
+
+        public static Range parseDate(String text) {
+            return parse(text, value -> LocalDate.parse(value).toEpochDay());
+        }
+
+        private static Range parse(String text, ToDoubleFunction<String> parseValue) {
+            String range = text.trim();
+            try {
+                if (range.startsWith("<=")) {
+                    return new Range(Double.NEGATIVE_INFINITY, true, value(range.substring(2), parseValue), true);
+                } else if (range.startsWith("<")) {
+                    return new Range(Double.NEGATIVE_INFINITY, true, value(range.substring(1), parseValue), false);
+                } else if (range.startsWith(">=")) {
+                    return new Range(value(range.substring(2), parseValue), true, Double.POSITIVE_INFINITY, true);
+                } else if (range.startsWith(">")) {
+                    return new Range(value(range.substring(1), parseValue), false, Double.POSITIVE_INFINITY, true);
+                } else if (range.contains("..")) {
+                    String lower = range.substring(0, range.indexOf("..")).trim();
+                    String upper = range.substring(range.indexOf("..") + 2).trim();
+                    if (lower.isEmpty() && upper.isEmpty()) {
+                        return null;
+                    }
+                    return new Range(lower.isEmpty() ? Double.NEGATIVE_INFINITY : value(lower, parseValue), true,
+                            upper.isEmpty() ? Double.POSITIVE_INFINITY : value(upper, parseValue), true);
+                } else {
+                    double value = value(range.startsWith("=") ? range.substring(1) : range, parseValue);
+                    return new Range(value, true, value, true);
+                }
+            } catch (NumberFormatException | DateTimeParseException exception) {
+                return null;
+            }
+        }
+
+        private static double value(String text, ToDoubleFunction<String> parseValue) {
+            double value = parseValue.applyAsDouble(text.trim());
+            if (Double.isNaN(value)) {
+                throw new NumberFormatException();
+            }
+            return value;
+        }
+    }
+
+    // For SearchExecutor: takes the range now and searches when called
+    public Callable<List<T>> query(Range range) {
+        return () -> search(range);
+    }
+
+    // Entities in the range, in key order
+    @SuppressWarnings("unchecked")
+    public synchronized List<T> search(Range range) {
+        if (unindexedRows != null) {
+            rebuild(unindexedRows);
+            unindexedRows = null;
+        }
+        int from = range.lowerInclusive ? firstAtLeast(range.lower) : firstAbove(range.lower);
+        int to = range.upperInclusive ? firstAbove(range.upper) : firstAtLeast(range.upper);
+        List<T> results = new ArrayList<>(Math.max(0, to - from));
+        for (int i = from; i < to; i++) {
+            results.add((T) entities[i]);
+        }
+        return results;
+    }
+
+    // Index of the first key >= value
+    private int firstAtLeast(double value) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (Double.compare(keys[middle], value) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    // Index of the first key > value
+    private int firstAbove(double value) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (Double.compare(keys[middle], value) <= 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private synchronized void onChanged(ListChangeListener.Change<? extends T> change) {
+        if (unindexedRows != null) {
+            unindexedRows = new ArrayList<>(list);
+            return;
+        }
+        while (change.next()) {
+            if (change.wasPermutated()) {
+                continue;
+            }
+            if (change.getRemovedSize() > rebuildThreshold) {
+                rebuild(list);
+                return;
+            }
+            for (T removed: change.getRemoved()) {
+                remove(removed);
+            }
+            for (T added: change.getAddedSubList()) {
+                add(added);
+            }
+        }
+    }
+
+    private synchronized void refreshEntity(T entity) {
+        Double key = indexedKeys.get(entity);
+        if (key != null && Double.compare(key, keyOf.applyAsDouble(entity)) != 0) {
+            remove(entity);
+            add(entity);
+        }
+    }
+
+    private void rebuild(List<T> rows) {
+        indexedKeys.clear();
+        size = rows.size();
+        Integer[] order = new Integer[size];
+        double[] rowKeys = new double[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+            rowKeys[i] = keyOf.applyAsDouble(rows.get(i));
+            indexedKeys.put(rows.get(i), rowKeys[i]);
+        }
+        // Stable, so equal keys stay in list order
+        Arrays.sort(order, (first, second) -> Double.compare(rowKeys[first], rowKeys[second]));
+        keys = new double[Math.max(16, size)];
+        entities = new Object[keys.length];
+        for (int i = 0; i < size; i++) {
+            keys[i] = rowKeys[order[i]];
+            entities[i] = rows.get(order[i]);
+        }
+    }
+
+    private void add(T entity) {
+        double key = keyOf.applyAsDouble(entity);
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, Math.max(16, size * 2));
+            entities = Arrays.copyOf(entities, keys.length);
+        }
+        int index = firstAbove(key);
+        System.arraycopy(keys, index, keys, index + 1, size - index);
+        System.arraycopy(entities, index, entities, index + 1, size - index);
+        keys[index] = key;
+        entities[index] = entity;
+        size++;
+        indexedKeys.put(entity, key);
+    }
+
+    private void remove(T entity) {
+        Double key = indexedKeys.remove(entity);
+        if (key == null) {
+            return;
+        }
+        for (int index = firstAtLeast(key); index < size && Double.compare(keys[index], key) == 0; index++) {
+            if (entities[index] == entity) {
+                System.arraycopy(keys, index + 1, keys, index, size - index - 1);
+                System.arraycopy(entities, index + 1, entities, index, size - index - 1);
+                size--;
+                entities[size] = null;
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,611 @@
+package model;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.text.ParseException;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+public class RecordCodec {
+    // Records are one per line with fields separated by '|', list fields separated by "<>".
+    // Text fields escape '\', '|', line feed and carriage return with a backslash so they can hold any value.
+    private static final byte fieldSeparator = '|';
+    private static final byte listSeparator = '<';
+    private static final byte lineFeed = '\n';
+    private static final byte carriageReturn = '\r';
+    private static final byte escape = '\\';
+
+    private static final int windowSize = 1024 * 1024;
+    // readParallel() splits files into chunks of about this size; smaller files are read by readMapped()
+    private static final int parallelChunkSize = 4 * 1024 * 1024;
+
+    private static final double[] powersOfTen = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    public interface RecordDecoder<T> {
+        T decode(Cursor cursor) throws IOException, ParseException;
+    }
+
+    public static String escape(String text) {
+        if (text == null) {
+            return null;
+        }
+        StringBuilder builder = null;
+        for (int i = 0; i < text.length(); i++) {
+            char character = text.charAt(i);
+            String replacement = null;
+            switch (character) {
+                case '\\':
+                    replacement = "\\\\";
+                    break;
+                case '|':
+                    replacement = "\\|";
+                    break;
+                case '\n':
+                    replacement = "\\n";
+                    break;
+                case '\r':
+                    replacement = "\\r";
+                    break;
+            }
+            if (replacement != null && builder == null) {
+                builder = new StringBuilder(text.length() + 8);
+                builder.append(text, 0, i);
+            }
+            if (builder != null) {
+                if (replacement != null) {
+                    builder.append(replacement);
+                } else {
+                    builder.append(character);
+                }
+            }
+        }
+        return builder == null ? text : builder.toString();
+    }
+
+    // Timestamps are written as UTC ISO-8601 with milliseconds, always 24 characters: 2019-11-24T21:47:15.000Z
+    public static String formatInstant(long epochMillis) {
+        long epochSecond = Math.floorDiv(epochMillis, 1000L);
+        long days = Math.floorDiv(epochSecond, 86400L);
+        int secondOfDay = (int) Math.floorMod(epochSecond, 86400L);
+        int millis = (int) Math.floorMod(epochMillis, 1000L);
+        // Civil date from days since 1970-01-01 (proleptic Gregorian, eras of 400 years)
+        long shifted = days + 719468;
+        long era = Math.floorDiv(shifted, 146097L);
+        long dayOfEra = shifted - era * 146097;
+        long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        long monthIndex = (5 * dayOfYear + 2) / 153;
+        int day = (int) (dayOfYear - (153 * monthIndex + 2) / 5 + 1);
+        int month = (int) (monthIndex < 10 ? monthIndex + 3 : monthIndex - 9);
+        long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+        if (year < 0 || year > 9999) {
+            return Instant.ofEpochMilli(epochMillis).toString();
+        }
+        char[] text = new char[24];
+        digits(text, 0, (int) year, 4);
+        text[4] = '-';
+        digits(text, 5, month, 2);
+        text[7] = '-';
+        digits(text, 8, day, 2);
+        text[10] = 'T';
+        digits(text, 11, secondOfDay / 3600, 2);
+        text[13] = ':';
+        digits(text, 14, secondOfDay / 60 % 60, 2);
+        text[16] = ':';
+        digits(text, 17, secondOfDay % 60, 2);
+        text[19] = '.';
+        digits(text, 20, millis, 3);
+        text[23] = 'Z';
+        return new String(text);
+    }
+
+    private static void digits(char[] text, int offset, int value, int count) {
+        for (int index = offset + count - 1; index >= offset; index--) {
+            text[index] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+    }
+
+    // Days from 1970-01-01 to the date, the inverse of the conversion in formatInstant()
+    static long epochDay(int year, int month, int day) {
+        int adjustedYear = month <= 2 ? year - 1 : year;
+        long era = Math.floorDiv(adjustedYear, 400);
+        long yearOfEra = adjustedYear - era * 400;
+        long dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+
+    public static Cursor cursor(String lineString) {
+        byte[] data = lineString.getBytes(StandardCharsets.UTF_8);
+        return new Cursor(data, data.length);
+    }
+
+    // Maps the file and decodes every record without going through a String per line
+    public static <T> List<T> readMapped(File file, RecordDecoder<T> decoder) throws IOException, ParseException {
+        List<T> records = new ArrayList<>();
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException(file + " is too large to be mapped");
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            try {
+                // The mapping is scanned through a reusable window, which the JIT handles far better than
+                // per-byte ByteBuffer reads. Only whole lines are decoded, the remainder moves to the next window.
+                byte[] window = new byte[windowSize];
+                int carried = 0;
+                while (true) {
+                    int read = Math.min(window.length - carried, buffer.remaining());
+                    buffer.get(window, carried, read);
+                    int filled = carried + read;
+                    int end = filled;
+                    if (buffer.hasRemaining()) {
+                        end = lastLineEnd(window, filled);
+                        if (end == 0) {
+                            // A single record longer than the window
+                            window = Arrays.copyOf(window, window.length * 2);
+                            carried = filled;
+                            continue;
+                        }
+                    }
+                    Cursor cursor = new Cursor(window, end);
+                    while (cursor.hasNext()) {
+                        records.add(decoder.decode(cursor));
+                        cursor.endRecord();
+                    }
+                    if (!buffer.hasRemaining()) {
+                        break;
+                    }
+                    carried = filled - end;
+                    System.arraycopy(window, end, window, 0, carried);
+                }
+            } finally {
+                unmap(buffer);
+            }
+        }
+        return records;
+    }
+
+    // Like readMapped(), but a large file is split at line ends and the pieces are decoded in parallel on the
+    // common fork-join pool; the records come back in file order
+    public static <T> List<T> readParallel(File file, RecordDecoder<T> decoder) throws IOException, ParseException {
+        if (file.length() <= parallelChunkSize * 2L) {
+            return readMapped(file, decoder);
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException(file + " is too large to be mapped");
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            try {
+                List<List<T>> pieces = ForkJoinPool.commonPool().invoke(
+                        new DecodeTask<>(buffer, 0, (int) channel.size(), decoder));
+                int count = 0;
+                for (List<T> piece: pieces) {
+                    count += piece.size();
+                }
+                List<T> records = new ArrayList<>(count);
+                for (List<T> piece: pieces) {
+                    records.addAll(piece);
+                }
+                return records;
+            } catch (DecodeException exception) {
+                if (exception.getCause() instanceof IOException) {
+                    throw (IOException) exception.getCause();
+                }
+                throw (ParseException) exception.getCause();
+            } finally {
+                unmap(buffer);
+            }
+        }
+    }
+
+    // Carries a checked exception out of a fork-join task
+    private static class DecodeException extends RuntimeException {
+        private DecodeException(Exception cause) {
+            super(cause);
+        }
+    }
+
+    private static class DecodeTask<T> extends RecursiveTask<List<List<T>>> {
+        private final ByteBuffer buffer;
+        private final int start;
+        private final int end;
+        private final RecordDecoder<T> decoder;
+
+        private DecodeTask(ByteBuffer buffer, int start, int end, RecordDecoder<T> decoder) {
+            this.buffer = buffer;
+            this.start = start;
+            this.end = end;
+            this.decoder = decoder;
+        }
+
+        @Override
+        protected List<List<T>> compute() {
+            if (end - start > parallelChunkSize) {
+                // Split after the line end nearest the middle, so no record is cut in two
+                int middle = start + (end - start) / 2;
+                while (middle < end && buffer.get(middle - 1) != lineFeed) {
+                    middle++;
+                }
+                if (middle < end) {
+                    DecodeTask<T> firstHalf = new DecodeTask<>(buffer, start, middle, decoder);
+                    firstHalf.fork();
+                    List<List<T>> secondHalf = new DecodeTask<>(buffer, middle, end, decoder).compute();
+                    List<List<T>> pieces = firstHalf.join();
+                    pieces.addAll(secondHalf);
+                    return pieces;
+                }
+            }
+            byte[] data = new byte[end - start];
+            ByteBuffer piece = buffer.duplicate();
+            piece.position(start);
+            piece.get(data);
+            List<T> records = new ArrayList<>();
+            Cursor cursor = new Cursor(data, data.length);
+            try {
+                while (cursor.hasNext()) {
+                    records.add(decoder.decode(cursor));
+                    cursor.endRecord();
+                }
+            } catch (IOException | ParseException exception) {
+                throw new DecodeException(exception);
+            }
+            List<List<T>> pieces = new ArrayList<>();
+            pieces.add(records);
+            return pieces;
+        }
+    }
+
+    private static int lastLineEnd(byte[] window, int filled) {
+        for (int index = filled - 1; index >= 0; index--) {
+            if (window[index] == lineFeed) {
+                return index + 1;
+            }
+        }
+        return 0;
+    }
+
+    // Windows refuses to replace a file while a mapping of it is still open, so the snapshot writer
+    // could not rename over it at exit. Release the mapping now instead of waiting for the garbage collector.
+    static void unmap(MappedByteBuffer buffer) {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field unsafeField = unsafeClass.getDeclaredField("theUnsafe");
+            unsafeField.setAccessible(true);
+            Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            invokeCleaner.invoke(unsafeField.get(null), buffer);
+        } catch (ReflectiveOperationException | RuntimeException exception) {
+            // Left to the garbage collector
+        }
+    }
+
+    public static class Cursor {
+        private final byte[] data;
+        private final int limit;
+        private int position;
+        private byte[] scratch;
+
+        Cursor(byte[] data, int limit) {
+            this.data = data;
+            this.limit = limit;
+        }
+
+        boolean hasNext() {
+            // Blank lines between records are skipped
+            while (position < limit && (data[position] == lineFeed || data[position] == carriageReturn)) {
+                position++;
+            }
+            return position < limit;
+        }
+
+        void endRecord() {
+            while (position < limit && data[position] != lineFeed) {
+                if (data[position] == escape) {
+                    position++;
+                }
+                position++;
+            }
+            position++;
+        }
+
+        private boolean atFieldEnd(int index) {
+            if (index >= limit) {
+                return true;
+            }
+            byte value = data[index];
+            return value == fieldSeparator || value == lineFeed || value == carriageReturn;
+        }
+
+        private void endField() {
+            if (position < limit && data[position] == fieldSeparator) {
+                position++;
+            }
+        }
+
+        public int nextInt() {
+            int value = intValue();
+            endField();
+            return value;
+        }
+
+        public double nextDouble() {
+            double value = doubleValue();
+            endField();
+            return value;
+        }
+
+        // Parses the number at the cursor and stops on the separator that follows it
+        private int intValue() {
+            int start = position;
+            boolean negative = false;
+            if (position < limit && data[position] == '-') {
+                negative = true;
+                position++;
+            }
+            long value = 0;
+            int digits = 0;
+            while (position < limit) {
+                byte digit = data[position];
+                if (digit < '0' || digit > '9') {
+                    break;
+                }
+                value = value * 10 + (digit - '0');
+                digits++;
+                position++;
+            }
+            if (digits == 0 || digits > 10 || !(atFieldEnd(position) || data[position] == listSeparator)) {
+                throw new NumberFormatException("Not an integer: " + text(start, fieldEnd(start)));
+            }
+            value = negative ? -value : value;
+            if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+                throw new NumberFormatException("Integer out of range: " + value);
+            }
+            return (int) value;
+        }
+
+        private double doubleValue() {
+            int start = position;
+            boolean negative = false;
+            if (position < limit && (data[position] == '-' || data[position] == '+')) {
+                negative = data[position] == '-';
+                position++;
+            }
+            long mantissa = 0;
+            int significantDigits = 0;
+            int exponent = 0;
+            boolean seenPoint = false;
+            boolean seenDigit = false;
+            while (position < limit) {
+                byte digit = data[position];
+                if (digit >= '0' && digit <= '9') {
+                    seenDigit = true;
+                    if (significantDigits < 18) {
+                        // Leading zeros do not count towards precision
+                        if (mantissa != 0 || digit != '0') {
+                            mantissa = mantissa * 10 + (digit - '0');
+                            significantDigits++;
+                        }
+                        if (seenPoint) {
+                            exponent--;
+                        }
+                    } else {
+                        // Beyond what a long holds; the slow path below takes over
+                        significantDigits++;
+                        if (!seenPoint) {
+                            exponent++;
+                        }
+                    }
+                    position++;
+                } else if (digit == '.' && !seenPoint) {
+                    seenPoint = true;
+                    position++;
+                } else {
+                    break;
+                }
+            }
+            if (seenDigit && position < limit && (data[position] == 'E' || data[position] == 'e')) {
+                position++;
+                boolean negativeExponent = false;
+                if (position < limit && (data[position] == '-' || data[position] == '+')) {
+                    negativeExponent = data[position] == '-';
+                    position++;
+                }
+                int explicitExponent = 0;
+                boolean seenExponentDigit = false;
+                while (position < limit && data[position] >= '0' && data[position] <= '9') {
+                    explicitExponent = Math.min(explicitExponent * 10 + (data[position] - '0'), 100000);
+                    seenExponentDigit = true;
+                    position++;
+                }
+                if (!seenExponentDigit) {
+                    seenDigit = false;
+                }
+                exponent += negativeExponent ? -explicitExponent : explicitExponent;
+            }
+
+            boolean terminated = atFieldEnd(position) || data[position] == listSeparator;
+            double value;
+            if (seenDigit && terminated && significantDigits <= 15 && Math.abs(exponent) <= 22) {
+                // Both the mantissa and the power of ten are exact doubles, so a single operation rounds correctly
+                value = exponent < 0 ? mantissa / powersOfTen[-exponent] : mantissa * powersOfTen[exponent];
+                value = negative ? -value : value;
+            } else {
+                // Long mantissas, huge exponents, NaN and Infinity go through the JDK parser
+                position = start;
+                int end = start;
+                while (!atFieldEnd(end) && data[end] != listSeparator) {
+                    end++;
+                }
+                value = Double.parseDouble(text(start, end));
+                position = end;
+            }
+            return value;
+        }
+
+        public boolean nextBoolean() {
+            int end = fieldEnd(position);
+            boolean value = end - position == 4
+                    && (data[position] | 0x20) == 't' && (data[position + 1] | 0x20) == 'r'
+                    && (data[position + 2] | 0x20) == 'u' && (data[position + 3] | 0x20) == 'e';
+            position = end;
+            endField();
+            return value;
+        }
+
+        // Whether the field starts like an ISO-8601 date (yyyy-...)
+        public boolean atInstant() {
+            return position + 4 < limit && isDigit(position) && isDigit(position + 1) && isDigit(position + 2)
+                    && isDigit(position + 3) && data[position + 4] == '-';
+        }
+
+        // Epoch milliseconds of an ISO-8601 timestamp. The layout formatInstant() writes is read by position;
+        // anything else goes through Instant.parse().
+        public long nextInstant() {
+            int end = fieldEnd(position);
+            long epochMillis;
+            if (end - position == 24 && data[position + 4] == '-' && data[position + 7] == '-'
+                    && data[position + 10] == 'T' && data[position + 13] == ':' && data[position + 16] == ':'
+                    && data[position + 19] == '.' && data[position + 23] == 'Z') {
+                int year = number(position, 4);
+                int month = number(position + 5, 2);
+                int day = number(position + 8, 2);
+                int hour = number(position + 11, 2);
+                int minute = number(position + 14, 2);
+                int second = number(position + 17, 2);
+                int millis = number(position + 20, 3);
+                if (month < 1 || month > 12 || day < 1 || day > 31 || hour > 23 || minute > 59 || second > 59) {
+                    throw new NumberFormatException("Not a timestamp: " + text(position, end));
+                }
+                epochMillis = ((epochDay(year, month, day) * 24 + hour) * 60 + minute) * 60_000L
+                        + second * 1000L + millis;
+            } else {
+                try {
+                    epochMillis = Instant.parse(text(position, end)).toEpochMilli();
+                } catch (DateTimeParseException exception) {
+                    throw new NumberFormatException("Not a timestamp: " + text(position, end));
+                }
+            }
+            position = end;
+            endField();
+            return epochMillis;
+        }
+
+        private boolean isDigit(int index) {
+            return data[index] >= '0' && data[index] <= '9';
+        }
+
+        private int number(int index, int count) {
+            int value = 0;
+            for (int end = index + count; index < end; index++) {
+                if (!isDigit(index)) {
+                    throw new NumberFormatException("Not a timestamp: " + text(position, fieldEnd(position)));
+                }
+                value = value * 10 + (data[index] - '0');
+            }
+            return value;
+        }
+
+        public int[] nextIntArray() {
+            int[] values = new int[8];
+            int count = 0;
+            while (!atFieldEnd(position)) {
+                if (count == values.length) {
+                    values = Arrays.copyOf(values, count * 2);
+                }
+                values[count++] = intValue();
+                skipListSeparator();
+            }
+            endField();
+            return Arrays.copyOf(values, count);
+        }
+
+        public double[] nextDoubleArray() {
+            double[] values = new double[8];
+            int count = 0;
+            while (!atFieldEnd(position)) {
+                if (count == values.length) {
+                    values = Arrays.copyOf(values, count * 2);
+                }
+                values[count++] = doubleValue();
+                skipListSeparator();
+            }
+            endField();
+            return Arrays.copyOf(values, count);
+        }
+
+        private void skipListSeparator() {
+            if (position + 1 < limit && data[position] == listSeparator && data[position + 1] == '>') {
+                position += 2;
+            }
+        }
+
+        public String nextText() {
+            int end = fieldEnd(position);
+            String value = text(position, end);
+            position = end;
+            endField();
+            return value;
+        }
+
+        public void skipField() {
+            position = fieldEnd(position);
+            endField();
+        }
+
+        private int fieldEnd(int index) {
+            while (!atFieldEnd(index)) {
+                index += data[index] == escape ? 2 : 1;
+            }
+            return Math.min(index, limit);
+        }
+
+        // Only text fields are materialized, unescaping on the way
+        private String text(int start, int end) {
+            int firstEscape = start;
+            while (firstEscape < end && data[firstEscape] != escape) {
+                firstEscape++;
+            }
+            if (firstEscape == end) {
+                return new String(data, start, end - start, StandardCharsets.UTF_8);
+            }
+            if (scratch == null || scratch.length < end - start) {
+                scratch = new byte[Math.max(end - start, 256)];
+            }
+            int length = 0;
+            for (int index = start; index < end; index++) {
+                byte value = data[index];
+                if (value == escape && index + 1 < end) {
+                    byte escaped = data[index + 1];
+                    if (escaped == 'n') {
+                        value = lineFeed;
+                        index++;
+                    } else if (escaped == 'r') {
+                        value = carriageReturn;
+                        index++;
+                    } else if (escaped == escape || escaped == fieldSeparator) {
+                        value = escaped;
+                        index++;
+                    }
+                }
+                scratch[length++] = value;
+            }
+            return new String(scratch, 0, length, StandardCharsets.UTF_8);
+        }
+    }
+}
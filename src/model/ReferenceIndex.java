@@ -0,0 +1,97 @@
+package model;
+
+import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableList;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+public class ReferenceIndex<T> {
+    // Reverse lookup from a referenced ID (a category, supplier, product or user) to the entities in a list that
+    // refer to it, e.g. category ID -> products. Follows the list through a change listener; setters that change
+    // a reference call refresh() so the entity moves to its new key.
+    private static final int rebuildThreshold = 16;
+
+    private final ObservableList<T> list;
+    private final Function<T, int[]> keysOf;
+    private final Map<Integer, Set<T>> referrers = new HashMap<>();
+    // The keys each entity is currently filed under, so it can be removed after its references change
+    private final Map<T, int[]> indexedKeys = new IdentityHashMap<>();
+
+    public ReferenceIndex(ObservableList<T> list, Function<T, int[]> keysOf) {
+        this.list = list;
+        this.keysOf = keysOf;
+        rebuild();
+        list.addListener((ListChangeListener<T>) change -> {
+            while (change.next()) {
+                if (change.wasPermutated()) {
+                    continue;
+                }
+                if (change.getRemovedSize() > rebuildThreshold) {
+                    rebuild();
+                    return;
+                }
+                for (T removed: change.getRemoved()) {
+                    remove(removed);
+                }
+                for (T added: change.getAddedSubList()) {
+                    add(added);
+                }
+            }
+        });
+    }
+
+    public synchronized boolean isReferenced(int key) {
+        return referrers.containsKey(key);
+    }
+
+    public synchronized List<T> findReferrers(int key) {
+        Set<T> entities = referrers.get(key);
+        return entities == null ? new ArrayList<>() : new ArrayList<>(entities);
+    }
+
+    public synchronized void refresh(T entity) {
+        if (indexedKeys.containsKey(entity)) {
+            remove(entity);
+            add(entity);
+        }
+    }
+
+    private synchronized void rebuild() {
+        referrers.clear();
+        indexedKeys.clear();
+        for (T entity: list) {
+            add(entity);
+        }
+    }
+
+    private synchronized void add(T entity) {
+        int[] keys = keysOf.apply(entity).clone();
+        indexedKeys.put(entity, keys);
+        for (int key: keys) {
+            referrers.computeIfAbsent(key, ignored -> Collections.newSetFromMap(new IdentityHashMap<>())).add(entity);
+        }
+    }
+
+    private synchronized void remove(T entity) {
+        int[] keys = indexedKeys.remove(entity);
+        if (keys == null) {
+            return;
+        }
+        for (int key: keys) {
+            Set<T> entities = referrers.get(key);
+            if (entities != null) {
+                entities.remove(entity);
+                if (entities.isEmpty()) {
+                    referrers.remove(key);
+                }
+            }
+        }
+    }
+}
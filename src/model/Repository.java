@@ -0,0 +1,21 @@
+package model;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+
+public interface Repository<T> extends Closeable {
+    // Entities are keyed by their ID; logs, which have none, by their position in the log
+    T findById(int id) throws IOException;
+
+    List<T> findAll() throws IOException;
+
+    // Adds the entity, or replaces the one with the same key
+    void save(T entity) throws IOException;
+
+    void deleteById(int id) throws IOException;
+
+    int size();
+
+    void close() throws IOException;
+}
@@ -0,0 +1,113 @@
+package model;
+
+import javafx.application.Platform;
+import javafx.beans.property.ReadOnlyBooleanProperty;
+import javafx.beans.property.ReadOnlyBooleanWrapper;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+public class SearchExecutor<T> {
+    // Runs the table searches off the FX thread. Each keystroke submits a query; it only starts once typing has
+    // paused for the debounce delay, and a newer query replaces any that has not started. A query that is already
+    // running cannot be interrupted (the index is locked while it searches), so its result is dropped instead.
+    // The result of the latest query is handed to the table with one Platform.runLater, and busyProperty() turns
+    // on when a query takes longer than the busy delay. A one-off lookup, such as loading a table when its view
+    // opens, is run with runNow(), which skips the debounce; a failed query is handed to the failure handler, if
+    // there is one, on the FX thread.
+    //   -Dsearch.debounce   milliseconds to wait after the last keystroke (default 150)
+    //   -Dsearch.busy       milliseconds before the busy indicator is shown (default 300)
+    private static final long debounceDelay = Long.getLong("search.debounce", 150);
+    private static final long busyDelay = Long.getLong("search.busy", 300);
+    // Two threads, so the busy timer can fire while a query is running
+    private static final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(2, runnable -> {
+        Thread thread = new Thread(runnable, "search");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Consumer<List<T>> publisher;
+    private final Consumer<Exception> failureHandler;
+    private final ReadOnlyBooleanWrapper busy = new ReadOnlyBooleanWrapper(false);
+    private volatile long generation;
+    private ScheduledFuture<?> pendingQuery;
+
+    public SearchExecutor(Consumer<List<T>> publisher) {
+        this(publisher, null);
+    }
+
+    public SearchExecutor(Consumer<List<T>> publisher, Consumer<Exception> failureHandler) {
+        this.publisher = publisher;
+        this.failureHandler = failureHandler;
+    }
+
+    // Call on the FX thread; the query itself runs on a search thread
+    public void submit(Callable<List<T>> query) {
+        long queryGeneration = cancel();
+        pendingQuery = scheduler.schedule(() -> run(query, queryGeneration), debounceDelay, TimeUnit.MILLISECONDS);
+    }
+
+    // Call on the FX thread; starts the query on a search thread without waiting for the debounce delay
+    public void runNow(Callable<List<T>> query) {
+        long queryGeneration = cancel();
+        pendingQuery = scheduler.schedule(() -> run(query, queryGeneration), 0, TimeUnit.MILLISECONDS);
+    }
+
+    // Drops the pending query and any result still to come; returns the new generation
+    public long cancel() {
+        long queryGeneration = ++generation;
+        if (pendingQuery != null) {
+            pendingQuery.cancel(false);
+            pendingQuery = null;
+        }
+        busy.set(false);
+        return queryGeneration;
+    }
+
+    public ReadOnlyBooleanProperty busyProperty() {
+        return busy.getReadOnlyProperty();
+    }
+
+    private void run(Callable<List<T>> query, long queryGeneration) {
+        if (queryGeneration != generation) {
+            return;
+        }
+        ScheduledFuture<?> busyTimer = scheduler.schedule(() -> Platform.runLater(() -> {
+            if (queryGeneration == generation) {
+                busy.set(true);
+            }
+        }), busyDelay, TimeUnit.MILLISECONDS);
+
+        List<T> results;
+        try {
+            results = query.call();
+        } catch (Exception e) {
+            e.printStackTrace();
+            busyTimer.cancel(false);
+            Platform.runLater(() -> {
+                if (queryGeneration == generation) {
+                    busy.set(false);
+                    if (failureHandler != null) {
+                        failureHandler.accept(e);
+                    }
+                }
+            });
+            return;
+        }
+        busyTimer.cancel(false);
+        if (queryGeneration != generation) {
+            return;
+        }
+        Platform.runLater(() -> {
+            if (queryGeneration == generation) {
+                busy.set(false);
+                publisher.accept(results);
+            }
+        });
+    }
+}
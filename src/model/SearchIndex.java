@@ -0,0 +1,319 @@
+package model;
+
+import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableList;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Function;
+
+public class SearchIndex<T> {
+    // Substring search over one field of an entity list, backed by a trigram inverted index: every run of three
+    // characters in a value maps to the (sorted) numbers of the rows containing it. A query only looks at rows
+    // holding all of its trigrams and then checks those with contains(), the same test the tables used before.
+    // Queries shorter than three characters have no trigrams and are checked row by row.
+    // A query that extends the previous one only re-checks the previous matches, and recent results are cached
+    // until the rows change.
+    // An index is created the first time its field is searched and then follows the list through a change
+    // listener; field setters reach it through ChangeTracker.update, which calls refresh(). Searches may run on
+    // a background thread (see SearchExecutor): the index is only read and written under its own lock, and the
+    // list itself is only read on the FX thread.
+    private static final int rebuildThreshold = 16;
+    private static final int maxFilterPostings = 3;
+    private static final int cachedResultCount = 32;
+    private static final Map<ObservableList<?>, Map<String, SearchIndex<?>>> indexes = new IdentityHashMap<>();
+    private static final List<SearchIndex<?>> allIndexes = new CopyOnWriteArrayList<>();
+
+    private final ObservableList<T> list;
+    private final Function<T, String> valueOf;
+    // Row numbers are handed out in list order and never reused until the index is rebuilt
+    private final List<T> rows = new ArrayList<>();
+    private final List<String> rowValues = new ArrayList<>();
+    private final Map<T, Integer> rowNumbers = new IdentityHashMap<>();
+    private final Map<Long, Postings> postings = new HashMap<>();
+    private int removedRowCount;
+    // Recent queries and their matching row numbers, least recently used first
+    private final Map<String, int[]> cachedResults = new LinkedHashMap<String, int[]>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, int[]> eldest) {
+            return size() > cachedResultCount;
+        }
+    };
+    private String lastQuery;
+    private int[] lastMatchedRows;
+    // Rows waiting to be indexed by the first search
+    private List<T> unindexedRows;
+
+    // Create on the FX thread. Only a copy of the list is taken here; the rows are indexed by the first search,
+    // which may run on another thread.
+    private SearchIndex(ObservableList<T> list, Function<T, String> valueOf) {
+        this.list = list;
+        this.valueOf = valueOf;
+        this.unindexedRows = new ArrayList<>(list);
+        list.addListener(this::onChanged);
+    }
+
+    private synchronized void onChanged(ListChangeListener.Change<? extends T> change) {
+        if (unindexedRows != null) {
+            unindexedRows = new ArrayList<>(list);
+            return;
+        }
+        while (change.next()) {
+            if (change.wasPermutated()) {
+                continue;
+            }
+            if (change.getRemovedSize() > rebuildThreshold) {
+                rebuild(list);
+                return;
+            }
+            for (T removed: change.getRemoved()) {
+                remove(removed);
+            }
+            for (T added: change.getAddedSubList()) {
+                add(added);
+            }
+        }
+        // Renumber once most of the rows are gone
+        if (removedRowCount > 64 && removedRowCount > rows.size() / 2) {
+            rebuild(list);
+        }
+    }
+
+    // One index per list and field name, e.g. forField(Product.products, "Name", Product::getName)
+    @SuppressWarnings("unchecked")
+    public static <T> SearchIndex<T> forField(ObservableList<T> list, String field, Function<T, String> valueOf) {
+        synchronized (indexes) {
+            Map<String, SearchIndex<?>> fields = indexes.computeIfAbsent(list, ignored -> new HashMap<>());
+            SearchIndex<T> index = (SearchIndex<T>) fields.get(field);
+            if (index == null) {
+                index = new SearchIndex<>(list, valueOf);
+                fields.put(field, index);
+                allIndexes.add(index);
+            }
+            return index;
+        }
+    }
+
+    // Re-indexes an entity whose fields have changed, in every index that holds it
+    @SuppressWarnings("unchecked")
+    public static void refresh(Object entity) {
+        for (SearchIndex<?> index: allIndexes) {
+            ((SearchIndex<Object>) index).refreshRow(entity);
+        }
+    }
+
+    // Rows whose value contains the text, in the order they were added
+    public synchronized List<T> search(String text) {
+        if (unindexedRows != null) {
+            rebuild(unindexedRows);
+            unindexedRows = null;
+        }
+        int[] matchedRows = cachedResults.get(text);
+        if (matchedRows == null) {
+            // While typing, each query usually extends the last one, so its matches are among the last matches
+            if (lastQuery != null && text.contains(lastQuery)) {
+                matchedRows = narrow(lastMatchedRows, text);
+            } else {
+                matchedRows = lookUp(text);
+            }
+            cachedResults.put(text, matchedRows);
+        }
+        lastQuery = text;
+        lastMatchedRows = matchedRows;
+
+        List<T> results = new ArrayList<>(matchedRows.length);
+        for (int row: matchedRows) {
+            results.add(rows.get(row));
+        }
+        return results;
+    }
+
+    // For SearchExecutor: takes the text now and searches when called
+    public Callable<List<T>> query(String text) {
+        return () -> search(text);
+    }
+
+    private int[] narrow(int[] candidateRows, String text) {
+        int[] matchedRows = new int[candidateRows.length];
+        int count = 0;
+        for (int row: candidateRows) {
+            if (rowValues.get(row).contains(text)) {
+                matchedRows[count++] = row;
+            }
+        }
+        return Arrays.copyOf(matchedRows, count);
+    }
+
+    private int[] lookUp(String text) {
+        if (text.length() < 3) {
+            int[] matchedRows = new int[rows.size()];
+            int count = 0;
+            for (int row = 0; row < rows.size(); row++) {
+                if (rows.get(row) != null && rowValues.get(row).contains(text)) {
+                    matchedRows[count++] = row;
+                }
+            }
+            return Arrays.copyOf(matchedRows, count);
+        }
+
+        List<Postings> queryPostings = new ArrayList<>();
+        for (int i = 0; i + 3 <= text.length(); i++) {
+            Postings rowsWithTrigram = postings.get(trigram(text, i));
+            if (rowsWithTrigram == null) {
+                return new int[0];
+            }
+            if (!queryPostings.contains(rowsWithTrigram)) {
+                queryPostings.add(rowsWithTrigram);
+            }
+        }
+        // Walk the shortest list and look the rows up in the next few. Lists covering a large share of the rows
+        // filter out little and a binary search in them costs more than the final contains(), so they are skipped.
+        queryPostings.sort((first, second) -> Integer.compare(first.size, second.size));
+        Postings shortest = queryPostings.get(0);
+        int filterCount = 1;
+        while (filterCount < queryPostings.size() && filterCount <= maxFilterPostings
+                && queryPostings.get(filterCount).size <= rows.size() / 4) {
+            filterCount++;
+        }
+        int[] matchedRows = new int[shortest.size];
+        int count = 0;
+        for (int i = 0; i < shortest.size; i++) {
+            int row = shortest.rows[i];
+            boolean candidate = true;
+            for (int j = 1; j < filterCount && candidate; j++) {
+                candidate = queryPostings.get(j).contains(row);
+            }
+            if (candidate && rowValues.get(row).contains(text)) {
+                matchedRows[count++] = row;
+            }
+        }
+        return Arrays.copyOf(matchedRows, count);
+    }
+
+    // Any change to the rows can change any result
+    private void invalidateResults() {
+        cachedResults.clear();
+        lastQuery = null;
+        lastMatchedRows = null;
+    }
+
+    private synchronized void refreshRow(T entity) {
+        Integer row = rowNumbers.get(entity);
+        if (row == null) {
+            return;
+        }
+        String value = stringValue(entity);
+        if (!value.equals(rowValues.get(row))) {
+            invalidateResults();
+            removeTrigrams(row, rowValues.get(row));
+            rowValues.set(row, value);
+            addTrigrams(row, value);
+        }
+    }
+
+    private void rebuild(List<T> entities) {
+        invalidateResults();
+        rows.clear();
+        rowValues.clear();
+        rowNumbers.clear();
+        postings.clear();
+        removedRowCount = 0;
+        for (T entity: entities) {
+            add(entity);
+        }
+    }
+
+    private void add(T entity) {
+        invalidateResults();
+        int row = rows.size();
+        String value = stringValue(entity);
+        rows.add(entity);
+        rowValues.add(value);
+        rowNumbers.put(entity, row);
+        addTrigrams(row, value);
+    }
+
+    private void remove(T entity) {
+        Integer row = rowNumbers.remove(entity);
+        if (row == null) {
+            return;
+        }
+        invalidateResults();
+        removeTrigrams(row, rowValues.get(row));
+        rows.set(row, null);
+        rowValues.set(row, null);
+        removedRowCount++;
+    }
+
+    private String stringValue(T entity) {
+        return String.valueOf(valueOf.apply(entity));
+    }
+
+    private static long trigram(String value, int index) {
+        return (long) value.charAt(index) << 32 | (long) value.charAt(index + 1) << 16 | value.charAt(index + 2);
+    }
+
+    private void addTrigrams(int row, String value) {
+        for (int i = 0; i + 3 <= value.length(); i++) {
+            postings.computeIfAbsent(trigram(value, i), ignored -> new Postings()).add(row);
+        }
+    }
+
+    private void removeTrigrams(int row, String value) {
+        for (int i = 0; i + 3 <= value.length(); i++) {
+            long trigram = trigram(value, i);
+            Postings rowsWithTrigram = postings.get(trigram);
+            if (rowsWithTrigram != null && rowsWithTrigram.remove(row) && rowsWithTrigram.size == 0) {
+                postings.remove(trigram);
+            }
+        }
+    }
+
+    private static class Postings {
+        private int[] rows = new int[4];
+        private int size;
+
+        private boolean contains(int row) {
+            return Arrays.binarySearch(rows, 0, size, row) >= 0;
+        }
+
+        // Rows are mostly added in increasing order, so this is usually an append
+        private void add(int row) {
+            if (size > 0 && rows[size - 1] >= row) {
+                int index = Arrays.binarySearch(rows, 0, size, row);
+                if (index >= 0) {
+                    return;
+                }
+                insertAt(-index - 1, row);
+                return;
+            }
+            insertAt(size, row);
+        }
+
+        private void insertAt(int index, int row) {
+            if (size == rows.length) {
+                rows = Arrays.copyOf(rows, size * 2);
+            }
+            System.arraycopy(rows, index, rows, index + 1, size - index);
+            rows[index] = row;
+            size++;
+        }
+
+        private boolean remove(int row) {
+            int index = Arrays.binarySearch(rows, 0, size, row);
+            if (index < 0) {
+                return false;
+            }
+            System.arraycopy(rows, index + 1, rows, index, size - index - 1);
+            size--;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package model;
+
+import model.objects.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.text.ParseException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.ToIntFunction;
+
+public class SnapshotLoader {
+    private static final int snapshotFileCount = 9;
+
+    // Prints the load times after loading, when started with -Dstartup.timings=true
+    private static final boolean printLoadTimes = Boolean.getBoolean("startup.timings");
+
+    // Milliseconds spent reading each file during the last load, in the order they finished
+    private static final Map<String, Long> loadTimes = new LinkedHashMap<>();
+
+    public static void load() throws IOException, ParseException {
+        synchronized (loadTimes) {
+            loadTimes.clear();
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(snapshotFileCount, runnable -> {
+            Thread thread = new Thread(runnable, "snapshot-loader");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            // The files are independent, so they are parsed concurrently and startup takes as long as the largest one
+            Future<List<Product>> products;
+            Future<List<Catalogue>> catalogues;
+            Future<List<Category>> categories;
+            Future<List<Supplier>> suppliers;
+            Future<List<User>> users;
+            if (KeyValueRepository.isActive()) {
+                products = executor.submit(() -> readStore("Product",
+                        () -> read(IOWriterReader.productFile, IOWriterReader::parseProduct), Product::getProductId));
+                catalogues = executor.submit(() -> readStore("Catalogue",
+                        () -> read(IOWriterReader.catalogueFile, IOWriterReader::parseCatalogue), Catalogue::getCatalogueId));
+                categories = executor.submit(() -> readStore("Category",
+                        () -> read(IOWriterReader.categoryFile, IOWriterReader::parseCategory), Category::getCategoryId));
+                suppliers = executor.submit(() -> readStore("Supplier",
+                        () -> read(IOWriterReader.supplierFile, IOWriterReader::parseSupplier), Supplier::getSupplierId));
+                users = executor.submit(() -> readStore("User",
+                        () -> read(IOWriterReader.userFile, IOWriterReader::parseUser), User::getUserId));
+            } else {
+                if (BinarySnapshot.isActive()) {
+                    products = executor.submit(() -> readBinary(BinarySnapshot.productBinaryFile, BinarySnapshot::decodeProducts));
+                    catalogues = executor.submit(() -> readBinary(BinarySnapshot.catalogueBinaryFile, BinarySnapshot::decodeCatalogues));
+                } else {
+                    products = executor.submit(() -> read(IOWriterReader.productFile, IOWriterReader::parseProduct));
+                    catalogues = executor.submit(() -> read(IOWriterReader.catalogueFile, IOWriterReader::parseCatalogue));
+                }
+                categories = executor.submit(() -> read(IOWriterReader.categoryFile, IOWriterReader::parseCategory));
+                suppliers = executor.submit(() -> read(IOWriterReader.supplierFile, IOWriterReader::parseSupplier));
+                users = executor.submit(() -> read(IOWriterReader.userFile, IOWriterReader::parseUser));
+            }
+            // Saved logs are not decoded here: each list reads them from its file as they are needed
+            Future<LogFile> loginLogs = executor.submit(() -> openLog(IOWriterReader.loginLog));
+            Future<LogFile> productLogs = executor.submit(() -> openLog(IOWriterReader.productLog));
+            Future<LogFile> catalogueLogs = executor.submit(() -> openLog(IOWriterReader.catalogueLog));
+            Future<LogFile> supplierLogs = executor.submit(() -> openLog(IOWriterReader.supplierLog));
+
+            // The observable lists are only touched from this thread
+            Product.products.addAll(await(products));
+            Catalogue.catalogues.addAll(await(catalogues));
+            Category.categories.addAll(await(categories));
+            Supplier.suppliers.addAll(await(suppliers));
+            User.users.addAll(await(users));
+            Log.loginLogs.attach(await(loginLogs));
+            Log.productLogs.attach(await(productLogs));
+            Log.catalogueLogs.attach(await(catalogueLogs));
+            Log.supplierLogs.attach(await(supplierLogs));
+        } finally {
+            executor.shutdownNow();
+        }
+
+        if (!printLoadTimes) {
+            return;
+        }
+        synchronized (loadTimes) {
+            for (Map.Entry<String, Long> loadTime: loadTimes.entrySet()) {
+                System.out.println("Loaded " + loadTime.getKey() + " in " + loadTime.getValue() + " ms");
+            }
+        }
+    }
+
+    private static <T> List<T> read(File file, RecordCodec.RecordDecoder<T> decoder) throws IOException, ParseException {
+        long start = System.nanoTime();
+        List<T> records = RecordCodec.readMapped(file, decoder);
+        synchronized (loadTimes) {
+            loadTimes.put(file.getName(), (System.nanoTime() - start) / 1_000_000);
+        }
+        return records;
+    }
+
+    // Only scans the file for its index
+    private static LogFile openLog(File file) throws IOException {
+        long start = System.nanoTime();
+        LogFile logFile = LogFile.open(file);
+        synchronized (loadTimes) {
+            loadTimes.put(file.getName(), (System.nanoTime() - start) / 1_000_000);
+        }
+        return logFile;
+    }
+
+    private interface TextReader<T> {
+        List<T> read() throws IOException, ParseException;
+    }
+
+    // Reads every entity through the store, which stays open for the checkpoints; a store that does not exist yet
+    // is filled from the text file
+    private static <T> List<T> readStore(String kind, TextReader<T> textReader, ToIntFunction<T> keyOf)
+            throws IOException, ParseException {
+        File storeFile = KeyValueRepository.storeFile(kind);
+        if (!storeFile.exists()) {
+            List<T> records = textReader.read();
+            KeyValueRepository.write(storeFile, records, keyOf);
+            return records;
+        }
+        long start = System.nanoTime();
+        Repository<T> repository = KeyValueRepository.open(kind);
+        List<T> records = repository.findAll();
+        synchronized (loadTimes) {
+            loadTimes.put(storeFile.getName(), (System.nanoTime() - start) / 1_000_000);
+        }
+        return records;
+    }
+
+    private interface BinaryDecoder<T> {
+        List<T> decode(ByteBuffer buffer) throws IOException;
+    }
+
+    private static <T> List<T> readBinary(File file, BinaryDecoder<T> decoder) throws IOException {
+        long start = System.nanoTime();
+        List<T> records = decoder.decode(BinarySnapshot.read(file));
+        synchronized (loadTimes) {
+            loadTimes.put(file.getName(), (System.nanoTime() - start) / 1_000_000);
+        }
+        return records;
+    }
+
+    private static <T> T await(Future<T> future) throws IOException, ParseException {
+        try {
+            return future.get();
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new IOException(exception);
+        } catch (ExecutionException exception) {
+            Throwable cause = exception.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof ParseException) {
+                throw (ParseException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    public static Map<String, Long> getLoadTimes() {
+        synchronized (loadTimes) {
+            return new LinkedHashMap<>(loadTimes);
+        }
+    }
+}
@@ -0,0 +1,266 @@
+package model;
+
+import model.objects.*;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class SnapshotWriter {
+    private static final int snapshotFileCount = 9;
+
+    // At exit, once the journal is closed: its records are part of this snapshot as well
+    public static void write() throws IOException {
+        Snapshot snapshot = capture();
+        snapshot.journals = new File[] {Journal.checkpointJournalFile, Journal.journalFile};
+        snapshot.write();
+    }
+
+    // Takes the changes and copies the lists, which must happen on the thread that modifies them (the FX thread).
+    // The returned snapshot can then be written from any thread.
+    public static Snapshot capture() {
+        Snapshot snapshot = new Snapshot();
+        Set<String> dirty = ChangeTracker.takeDirty();
+        // The key-value stores take the journaled changes instead of the lists
+        if (!KeyValueRepository.isActive()) {
+            snapshot.products = dirty.contains("Product") ? new ArrayList<>(Product.products) : null;
+            snapshot.catalogues = dirty.contains("Catalogue") ? new ArrayList<>(Catalogue.catalogues) : null;
+            snapshot.categories = dirty.contains("Category") ? new ArrayList<>(Category.categories) : null;
+            snapshot.suppliers = dirty.contains("Supplier") ? new ArrayList<>(Supplier.suppliers) : null;
+            snapshot.users = dirty.contains("User") ? new ArrayList<>(User.users) : null;
+        }
+        snapshot.loginLogs = logWrite(Log.loginLogs, IOWriterReader.loginLog, "LoginLog", dirty);
+        snapshot.productLogs = logWrite(Log.productLogs, IOWriterReader.productLog, "ProductLog", dirty);
+        snapshot.catalogueLogs = logWrite(Log.catalogueLogs, IOWriterReader.catalogueLog, "CatalogueLog", dirty);
+        snapshot.supplierLogs = logWrite(Log.supplierLogs, IOWriterReader.supplierLog, "SupplierLog", dirty);
+        snapshot.idRecords = dirty.contains("ID") ? IOWriterReader.idRecords() : null;
+        return snapshot;
+    }
+
+    public static class Snapshot {
+        private List<Product> products;
+        private List<Catalogue> catalogues;
+        private List<Category> categories;
+        private List<Supplier> suppliers;
+        private List<User> users;
+        private LogWrite loginLogs;
+        private LogWrite productLogs;
+        private LogWrite catalogueLogs;
+        private LogWrite supplierLogs;
+        private List<String> idRecords;
+        // Applied to the key-value stores; a checkpoint covers what Journal.rotate() moved aside
+        private File[] journals = {Journal.checkpointJournalFile};
+
+        private Snapshot() {
+        }
+
+        public void write() throws IOException {
+            ExecutorService executor = Executors.newFixedThreadPool(snapshotFileCount, runnable -> {
+                Thread thread = new Thread(runnable, "snapshot-writer");
+                thread.setDaemon(true);
+                return thread;
+            });
+            try {
+                // Untouched files are skipped entirely
+                List<Future<?>> writes = new ArrayList<>();
+                if (KeyValueRepository.isActive()) {
+                    writes.add(executor.submit(() -> Journal.applyToStores(journals)));
+                } else {
+                    if (BinarySnapshot.isActive()) {
+                        if (products != null) {
+                            writes.add(executor.submit(() -> writeAtomically(BinarySnapshot.productBinaryFile,
+                                    BinarySnapshot.encodeProducts(products))));
+                        }
+                        if (catalogues != null) {
+                            writes.add(executor.submit(() -> writeAtomically(BinarySnapshot.catalogueBinaryFile,
+                                    BinarySnapshot.encodeCatalogues(catalogues))));
+                        }
+                    } else {
+                        if (products != null) {
+                            writes.add(executor.submit(() -> writeAtomically(IOWriterReader.productFile, products)));
+                        }
+                        if (catalogues != null) {
+                            writes.add(executor.submit(() -> writeAtomically(IOWriterReader.catalogueFile, catalogues)));
+                        }
+                    }
+                    if (categories != null) {
+                        writes.add(executor.submit(() -> writeAtomically(IOWriterReader.categoryFile, categories)));
+                    }
+                    if (suppliers != null) {
+                        writes.add(executor.submit(() -> writeAtomically(IOWriterReader.supplierFile, suppliers)));
+                    }
+                    if (users != null) {
+                        writes.add(executor.submit(() -> writeAtomically(IOWriterReader.userFile, users)));
+                    }
+                }
+                // Appends only add past what the log window has mapped, rewrites go to a temporary file first
+                submit(writes, executor, loginLogs);
+                submit(writes, executor, productLogs);
+                submit(writes, executor, catalogueLogs);
+                submit(writes, executor, supplierLogs);
+                await(writes);
+                // Windows cannot replace a mapped file, so each mapping is only released for its move
+                replaceLogs(loginLogs, productLogs, catalogueLogs, supplierLogs);
+
+                // ID counters go last, so they are never behind the data they were handed out for
+                if (idRecords != null) {
+                    writeAtomically(IOWriterReader.idFile, idRecords);
+                }
+            } catch (IOException | RuntimeException exception) {
+                ChangeTracker.markAllDirty();
+                throw exception;
+            } finally {
+                executor.shutdown();
+            }
+        }
+
+        // Once write() has succeeded, on the FX thread: the logs written are read from their files from now on
+        public void saved() throws IOException {
+            for (LogWrite logWrite: new LogWrite[] {loginLogs, productLogs, catalogueLogs, supplierLogs}) {
+                if (logWrite != null) {
+                    logWrite.logs.markSaved(logWrite.file, logWrite.count, !logWrite.append, logWrite.editCount);
+                }
+            }
+        }
+    }
+
+    private static class LogWrite {
+        private final LogList logs;
+        private final File file;
+        private final List<Log> records;
+        private final boolean append;
+        // The list's size and edit count when the records were taken
+        private final int count;
+        private final int editCount;
+
+        private LogWrite(LogList logs, File file, List<Log> records, boolean append) {
+            this.logs = logs;
+            this.file = file;
+            this.records = records;
+            this.append = append;
+            count = logs.size();
+            editCount = logs.getEditCount();
+        }
+    }
+
+    private static LogWrite logWrite(LogList logs, File file, String kind, Set<String> dirty) {
+        int persisted = ChangeTracker.takePersistedCount(kind, logs.size());
+        if (dirty.contains(kind)) {
+            return new LogWrite(logs, file, new ArrayList<>(logs), false);
+        } else if (persisted < logs.size()) {
+            // Logs only grow, so just the new tail is written
+            return new LogWrite(logs, file, new ArrayList<>(logs.subList(persisted, logs.size())), true);
+        }
+        return null;
+    }
+
+    private static void submit(List<Future<?>> writes, ExecutorService executor, LogWrite logWrite) {
+        if (logWrite == null) {
+            return;
+        }
+        if (logWrite.append) {
+            writes.add(executor.submit(() -> append(logWrite.file, logWrite.records)));
+        } else {
+            writes.add(executor.submit(() -> writeTemporary(logWrite.file, logWrite.records)));
+        }
+    }
+
+    private static void replaceLogs(LogWrite... logWrites) throws IOException {
+        for (LogWrite logWrite: logWrites) {
+            if (logWrite != null && !logWrite.append) {
+                LogFile.replace(logWrite.file, temporaryOf(logWrite.file.toPath()));
+            }
+        }
+    }
+
+    private static void await(List<Future<?>> writes) throws IOException {
+        IOException failure = null;
+        for (Future<?> write: writes) {
+            try {
+                write.get();
+            } catch (ExecutionException exception) {
+                if (failure == null) {
+                    failure = new IOException(exception.getCause());
+                } else {
+                    failure.addSuppressed(exception.getCause());
+                }
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+                throw new IOException(exception);
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    public static Void writeAtomically(File file, List<?> records) throws IOException {
+        Path target = file.toPath();
+        Files.move(writeTemporary(file, records), target, StandardCopyOption.ATOMIC_MOVE,
+                StandardCopyOption.REPLACE_EXISTING);
+        return null;
+    }
+
+    // Writes the records next to the file, for a later move over it
+    private static Path writeTemporary(File file, List<?> records) throws IOException {
+        Path temporary = temporaryOf(file.toPath());
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            BufferedWriter writer = new BufferedWriter(Channels.newWriter(channel, StandardCharsets.UTF_8.newEncoder(), -1));
+            for (Object record: records) {
+                writer.write(record.toString());
+                writer.newLine();
+            }
+            writer.flush();
+            channel.force(true);
+        }
+        return temporary;
+    }
+
+    private static Path temporaryOf(Path target) {
+        return target.resolveSibling(target.getFileName() + ".tmp");
+    }
+
+    public static Void append(File file, List<?> records) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND)) {
+            BufferedWriter writer = new BufferedWriter(Channels.newWriter(channel, StandardCharsets.UTF_8.newEncoder(), -1));
+            for (Object record: records) {
+                writer.write(record.toString());
+                writer.newLine();
+            }
+            writer.flush();
+            channel.force(false);
+        }
+        return null;
+    }
+
+    public static Void writeAtomically(File file, ByteBuffer content) throws IOException {
+        Path target = file.toPath();
+        Path temporary = target.resolveSibling(target.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (content.hasRemaining()) {
+                channel.write(content);
+            }
+            channel.force(true);
+        }
+        Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        return null;
+    }
+}
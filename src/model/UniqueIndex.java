@@ -0,0 +1,100 @@
+package model;
+
+import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableList;
+
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Function;
+
+public class UniqueIndex<T> {
+    // Uniqueness check for one field of an entity list (product name, username, ...). Values are compared after
+    // normalise(), so "Apple" and " apple" count as the same name. Follows the list through a change listener;
+    // setters of the field call refresh() so a rename releases the old value.
+    // Keys are counted rather than just stored, since records loaded from older files may already repeat a value.
+    private static final int rebuildThreshold = 16;
+
+    private final ObservableList<T> list;
+    private final Function<T, String> valueOf;
+    private final Map<String, Integer> keyCounts = new HashMap<>();
+    private final Map<T, String> indexedKeys = new IdentityHashMap<>();
+
+    public UniqueIndex(ObservableList<T> list, Function<T, String> valueOf) {
+        this.list = list;
+        this.valueOf = valueOf;
+        rebuild();
+        list.addListener((ListChangeListener<T>) change -> {
+            while (change.next()) {
+                if (change.wasPermutated()) {
+                    continue;
+                }
+                if (change.getRemovedSize() > rebuildThreshold) {
+                    rebuild();
+                    return;
+                }
+                for (T removed: change.getRemoved()) {
+                    remove(removed);
+                }
+                for (T added: change.getAddedSubList()) {
+                    add(added);
+                }
+            }
+        });
+    }
+
+    public static String normalise(String value) {
+        return value == null ? null : value.trim().toLowerCase(Locale.ROOT);
+    }
+
+    public synchronized boolean isTaken(String value) {
+        return isTaken(value, null);
+    }
+
+    // For edits: the entity being edited may keep its own value
+    public synchronized boolean isTaken(String value, T ignored) {
+        String key = normalise(value);
+        if (key == null) {
+            return false;
+        }
+        int count = keyCounts.getOrDefault(key, 0);
+        if (ignored != null && key.equals(indexedKeys.get(ignored))) {
+            count--;
+        }
+        return count > 0;
+    }
+
+    public synchronized void refresh(T entity) {
+        if (indexedKeys.containsKey(entity)) {
+            remove(entity);
+            add(entity);
+        }
+    }
+
+    private synchronized void rebuild() {
+        keyCounts.clear();
+        indexedKeys.clear();
+        for (T entity: list) {
+            add(entity);
+        }
+    }
+
+    private synchronized void add(T entity) {
+        String key = normalise(valueOf.apply(entity));
+        indexedKeys.put(entity, key);
+        if (key != null) {
+            keyCounts.merge(key, 1, Integer::sum);
+        }
+    }
+
+    private synchronized void remove(T entity) {
+        if (!indexedKeys.containsKey(entity)) {
+            return;
+        }
+        String key = indexedKeys.remove(entity);
+        if (key != null) {
+            keyCounts.computeIfPresent(key, (ignored, count) -> count == 1 ? null : count - 1);
+        }
+    }
+}
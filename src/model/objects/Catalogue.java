@@ -4,56 +4,119 @@ import controller.LoginController;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 
-import javafx.collections.transformation.FilteredList;
 import model.IOWriterReader;
+import model.ChangeTracker;
+import model.IntervalIndex;
+import model.RecordCodec;
+import model.ReferenceIndex;
+import model.UniqueIndex;
 
 import java.time.LocalDate;
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.function.Predicate;
-import java.util.stream.Collectors;
 
 public class Catalogue {
     protected int catalogueId;
     protected String name;
     protected int userId;
-    protected List<Integer> productsId;
-    protected List<Double> productsDiscount;
+    // Line items are kept as parallel primitive arrays; sortedProductsId is a sorted copy of productsId for
+    // membership tests by binary search
+    protected int[] productsId;
+    protected double[] productsDiscount;
+    protected int[] sortedProductsId;
     protected LocalDate dateStart;
     protected LocalDate dateEnd;
     protected String description;
     public static ObservableList<Catalogue> catalogues = FXCollections.observableArrayList();
+    private static final ReferenceIndex<Catalogue> cataloguesByProduct =
+            new ReferenceIndex<>(catalogues, catalogue -> catalogue.productsId);
+    private static final ReferenceIndex<Catalogue> cataloguesByUser =
+            new ReferenceIndex<>(catalogues, catalogue -> new int[] {catalogue.userId});
+    private static final UniqueIndex<Catalogue> catalogueNames = new UniqueIndex<>(catalogues, Catalogue::getName);
+    // Catalogues by the days they run; a missing date leaves that side open
+    private static final IntervalIndex<Catalogue> cataloguesByDate = new IntervalIndex<>(catalogues,
+            catalogue -> catalogue.dateStart == null ? Long.MIN_VALUE : catalogue.dateStart.toEpochDay(),
+            catalogue -> catalogue.dateEnd == null ? Long.MAX_VALUE : catalogue.dateEnd.toEpochDay());
 
-    public Catalogue(int catalogueId, String name, int userId, List<Integer> productsId, List<Double> productsDiscount,
+    public Catalogue(int catalogueId, String name, int userId, int[] productsId, double[] productsDiscount,
                      LocalDate dateStart, LocalDate dateEnd, String description) {
         this.catalogueId = catalogueId;
         this.name = name;
         this.userId = userId;
-        this.productsId = productsId;
-        this.productsDiscount = productsDiscount;
+        setLines(productsId, productsDiscount);
         this.dateStart = dateStart;
         this.dateEnd = dateEnd;
         this.description = description;
     }
 
-    public Catalogue(String name, List<Integer> productsId, List<Double> productsDiscount, LocalDate dateStart,
+    public Catalogue(String name, int[] productsId, double[] productsDiscount, LocalDate dateStart,
                      LocalDate dateEnd, String description) {
         this.catalogueId = IOWriterReader.getCatalogueId();
         this.name = name;
         this.userId = LoginController.getInstance().getUserId();
-        this.productsId = productsId;
-        this.productsDiscount = productsDiscount;
+        setLines(productsId, productsDiscount);
         this.dateStart = dateStart;
         this.dateEnd = dateEnd;
         this.description = description;
     }
 
+    public static boolean isNameTaken(String name) {
+        return catalogueNames.isTaken(name);
+    }
+
+    public static boolean isNameTaken(String name, Catalogue ignored) {
+        return catalogueNames.isTaken(name, ignored);
+    }
+
+    public static List<Catalogue> findByProductId(int productId) {
+        return cataloguesByProduct.findReferrers(productId);
+    }
+
+    public static boolean isProductUsed(int productId) {
+        return cataloguesByProduct.isReferenced(productId);
+    }
+
+    public static List<Catalogue> findByUserId(int userId) {
+        return cataloguesByUser.findReferrers(userId);
+    }
+
+    public static boolean isUserUsed(int userId) {
+        return cataloguesByUser.isReferenced(userId);
+    }
+
+    public static List<Catalogue> findActiveOn(LocalDate date) {
+        return cataloguesByDate.findContaining(date.toEpochDay());
+    }
+
+    public static List<Catalogue> findActiveBetween(LocalDate from, LocalDate to) {
+        return cataloguesByDate.findOverlapping(from.toEpochDay(), to.toEpochDay());
+    }
+
+    // Catalogues running on the day that list the product
+    public static List<Catalogue> findActiveOn(LocalDate date, int productId) {
+        List<Catalogue> catalogues = new ArrayList<>();
+        for (Catalogue catalogue: findActiveOn(date)) {
+            if (catalogue.containsProduct(productId)) {
+                catalogues.add(catalogue);
+            }
+        }
+        return catalogues;
+    }
+
+    public boolean isActiveOn(LocalDate date) {
+        return (dateStart == null || !dateStart.isAfter(date)) && (dateEnd == null || !dateEnd.isBefore(date));
+    }
+
     public int getCatalogueId() {
         return catalogueId;
     }
 
     public void setCatalogueId(int catalogueId) {
+        ChangeTracker.delete(this);
         this.catalogueId = catalogueId;
+        ChangeTracker.update(this);
     }
 
     public String getName() {
@@ -62,11 +125,12 @@ public class Catalogue {
 
     public void setName(String name) {
         this.name = name;
+        catalogueNames.refresh(this);
+        ChangeTracker.update(this);
     }
 
     public String getUserUsername() {
-        Predicate<User> userPredicate = user -> user.getUserId() == this.getUserId();
-        return User.users.filtered(userPredicate).get(0).username;
+        return User.findById(this.getUserId()).username;
     }
 
     public int getUserId() {
@@ -75,32 +139,81 @@ public class Catalogue {
 
     public void setUserId(int userId) {
         this.userId = userId;
+        cataloguesByUser.refresh(this);
+        ChangeTracker.update(this);
     }
 
     public List<String> getProductsName() {
-        Predicate<Product> productPredicate = product -> this.getProductsId().contains(product.getProductId());
-        FilteredList<Product> products = Product.products.filtered(productPredicate);
-        List<String> productsName = new ArrayList<>();
-        for (Product product: products) {
-            productsName.add(product.getName());
+        List<String> productsName = new ArrayList<>(productsId.length);
+        for (int productId: productsId) {
+            Product product = Product.findById(productId);
+            if (product != null) {
+                productsName.add(product.getName());
+            }
         }
         return productsName;
     }
 
-    public List<Integer> getProductsId() {
-        return productsId;
+    public int getLineCount() {
+        return productsId.length;
     }
 
-    public void setProductsId(List<Integer> productsId) {
-        this.productsId = productsId;
+    public int getLineProductId(int line) {
+        return productsId[line];
+    }
+
+    public double getLineDiscount(int line) {
+        return productsDiscount[line];
+    }
+
+    public boolean containsProduct(int productId) {
+        return Arrays.binarySearch(sortedProductsId, productId) >= 0;
+    }
+
+    // Read-only views over the line arrays
+    public List<Integer> getProductsId() {
+        return new AbstractList<Integer>() {
+            @Override
+            public Integer get(int index) {
+                return productsId[index];
+            }
+
+            @Override
+            public int size() {
+                return productsId.length;
+            }
+        };
     }
 
     public List<Double> getProductsDiscount() {
-        return productsDiscount;
+        return new AbstractList<Double>() {
+            @Override
+            public Double get(int index) {
+                return productsDiscount[index];
+            }
+
+            @Override
+            public int size() {
+                return productsDiscount.length;
+            }
+        };
     }
 
-    public void setProductsDiscount(List<Double> productsDiscount) {
+    // The two arrays are parallel, so they are always replaced together
+    public void setProducts(int[] productsId, double[] productsDiscount) {
+        setLines(productsId, productsDiscount);
+        cataloguesByProduct.refresh(this);
+        ChangeTracker.update(this);
+    }
+
+    private void setLines(int[] productsId, double[] productsDiscount) {
+        if (productsId.length != productsDiscount.length) {
+            throw new IllegalArgumentException("Every product needs a discount");
+        }
+        this.productsId = productsId;
         this.productsDiscount = productsDiscount;
+        this.sortedProductsId = productsId.clone();
+        Arrays.sort(this.sortedProductsId);
     }
 
     public LocalDate getDateStart() {
@@ -109,6 +222,8 @@ public class Catalogue {
 
     public void setDateStart(LocalDate dateStart) {
         this.dateStart = dateStart;
+        cataloguesByDate.refresh(this);
+        ChangeTracker.update(this);
     }
 
     public LocalDate getDateEnd() {
@@ -117,6 +232,8 @@ public class Catalogue {
 
     public void setDateEnd(LocalDate dateEnd) {
         this.dateEnd = dateEnd;
+        cataloguesByDate.refresh(this);
+        ChangeTracker.update(this);
     }
 
     public String getDescription() {
@@ -125,15 +242,24 @@ public class Catalogue {
 
     public void setDescription(String description) {
         this.description = description;
+        ChangeTracker.update(this);
     }
 
     @Override
     public String toString() {
+        StringBuilder productsIdString = new StringBuilder();
+        StringBuilder productsDiscountString = new StringBuilder();
+        for (int line = 0; line < productsId.length; line++) {
+            if (line > 0) {
+                productsIdString.append("<>");
+                productsDiscountString.append("<>");
+            }
+            productsIdString.append(productsId[line]);
+            productsDiscountString.append(productsDiscount[line]);
+        }
         return String.format("%s|%s|%s|%s|%s|%s|%s|%s",
-                catalogueId, name, userId,
-                productsId.stream().map(Object::toString).collect(Collectors.joining("<>")),
-                productsDiscount.stream().map(Object::toString).collect(Collectors.joining("<>")),
-                dateStart, dateEnd, description
+                catalogueId, RecordCodec.escape(name), userId, productsIdString, productsDiscountString,
+                dateStart, dateEnd, RecordCodec.escape(description)
         );
     }
 }
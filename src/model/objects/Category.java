@@ -3,6 +3,9 @@ package model.objects;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import model.IOWriterReader;
+import model.IdIndex;
+import model.ChangeTracker;
+import model.RecordCodec;
 
 import java.io.IOException;
 
@@ -10,6 +13,7 @@ public class Category {
     protected int categoryId;
     protected String categoryName;
     public static ObservableList<Category> categories = FXCollections.observableArrayList();
+    private static final IdIndex<Category> categoriesById = new IdIndex<>(categories, Category::getCategoryId);
 
     public Category(int categoryId, String categoryName) throws IOException {
         this.categoryId = categoryId;
@@ -21,12 +25,20 @@ public class Category {
         this.categoryName = categoryName;
     }
 
+    public static Category findById(int categoryId) {
+        return categoriesById.get(categoryId);
+    }
+
     public int getCategoryId() {
         return categoryId;
     }
 
     public void setCategoryId(int categoryId) {
+        ChangeTracker.delete(this);
+        int previousCategoryId = this.categoryId;
         this.categoryId = categoryId;
+        categoriesById.rekey(this, previousCategoryId);
+        ChangeTracker.update(this);
     }
 
     public String getCategoryName() {
@@ -35,12 +47,13 @@ public class Category {
 
     public void setCategoryName(String categoryName) {
         this.categoryName = categoryName;
+        ChangeTracker.update(this);
     }
 
     @Override
     public String toString() {
         return String.format("%s|%s",
-                categoryId, categoryName
+                categoryId, RecordCodec.escape(categoryName)
         );
     }
 }
@@ -1,66 +1,139 @@
 package model.objects;
 
-import javafx.collections.FXCollections;
-import javafx.collections.ObservableList;
 import controller.LoginController;
+import model.LogIndex;
+import model.LogList;
+import model.LogSegments;
+import model.RecordCodec;
 
+import java.io.IOException;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.time.LocalDate;
+import java.time.ZoneId;
 import java.util.Date;
-import java.util.function.Predicate;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
 
 public class Log {
     protected Date timestamp;
     protected String action;
     protected int userId;
-    public static ObservableList<Log> loginLogs = FXCollections.observableArrayList();
-    public static ObservableList<Log> productLogs = FXCollections.observableArrayList();
-    public static ObservableList<Log> catalogueLogs = FXCollections.observableArrayList();
-    public static ObservableList<Log> supplierLogs = FXCollections.observableArrayList();
+    public static LogList loginLogs = new LogList();
+    public static LogList productLogs = new LogList();
+    public static LogList catalogueLogs = new LogList();
+    public static LogList supplierLogs = new LogList();
+    // Older log files hold Date.toString() timestamps, which are always in English
+    private static final ThreadLocal<SimpleDateFormat> legacyTimestampFormat =
+            ThreadLocal.withInitial(() -> new SimpleDateFormat("E MMM dd HH:mm:ss z yyyy", Locale.ENGLISH));
+    private static final LogIndex logIndex = new LogIndex(kinds());
 
     public Log(String timestamp, String action, String userId) throws ParseException {
-        this.timestamp = new SimpleDateFormat("E MMM dd HH:mm:ss z yyyy").parse(timestamp);
+        this.timestamp = parseLegacyTimestamp(timestamp);
         this.action = action;
         this.userId = Integer.parseInt(userId);
     }
 
+    public Log(String timestamp, String action, int userId) throws ParseException {
+        this.timestamp = parseLegacyTimestamp(timestamp);
+        this.action = action;
+        this.userId = userId;
+    }
+
+    public Log(Date timestamp, String action, int userId) {
+        this.timestamp = timestamp;
+        this.action = action;
+        this.userId = userId;
+    }
+
     public Log(String action) {
         this.timestamp = new Date();
         this.action = action;
         this.userId = LoginController.getInstance().getUserId();
     }
 
-    public Date getTimestamp() {
-        return timestamp;
+    public static Date parseLegacyTimestamp(String timestamp) throws ParseException {
+        return legacyTimestampFormat.get().parse(timestamp);
     }
 
-    public void setTimestamp(Date timestamp) {
-        this.timestamp = timestamp;
+    private static Map<String, LogList> kinds() {
+        Map<String, LogList> kinds = new LinkedHashMap<>();
+        kinds.put("LoginLog", loginLogs);
+        kinds.put("ProductLog", productLogs);
+        kinds.put("CatalogueLog", catalogueLogs);
+        kinds.put("SupplierLog", supplierLogs);
+        return kinds;
     }
 
-    public String getAction() {
-        return action;
+    // Every kind of log for the user, oldest first; sealed segments come before the active ones
+    public static List<Log> findByUserId(int userId) throws IOException, ParseException {
+        List<Log> logs = LogSegments.findByUserId(userId);
+        logs.addAll(logIndex.findByUserId(userId, Long.MIN_VALUE, Long.MAX_VALUE));
+        return logs;
     }
 
-    public void setAction(String action) {
-        this.action = action;
+    // Logs of one kind ("LoginLog", "ProductLog", "CatalogueLog" or "SupplierLog") from the day, oldest first
+    // Sealed segments are only read when the day is in one
+    public static List<Log> findByKindOn(String kind, LocalDate date) throws IOException, ParseException {
+        List<Log> logs = LogSegments.findByKind(kind, startOf(date), startOf(date.plusDays(1)));
+        logs.addAll(logIndex.findByKind(kind, startOf(date), startOf(date.plusDays(1))));
+        return logs;
+    }
+
+    // Sealed days are counted from the segment summaries
+    public static int countByKindOn(String kind, LocalDate date) {
+        return LogSegments.countByKindOn(kind, date)
+                + logIndex.countByKind(kind, startOf(date), startOf(date.plusDays(1)));
+    }
+
+    public static List<Log> findBetween(Date from, Date to) throws IOException, ParseException {
+        List<Log> logs = LogSegments.findBetween(from.getTime(), to.getTime());
+        logs.addAll(logIndex.findBetween(from.getTime(), to.getTime()));
+        return logs;
+    }
+
+    private static long startOf(LocalDate date) {
+        return date.atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    public Date getTimestamp() {
+        return timestamp;
+    }
+
+    public String getAction() {
+        return action;
     }
 
     public String getUsername() {
-        Predicate<User> userPredicate = user -> user.getUserId() == this.getUserId();
-        return User.users.filtered(userPredicate).get(0).username;
+        return User.findById(this.getUserId()).username;
     }
 
     public int getUserId() {
         return userId;
     }
 
-    public void setUserId(int userId) {
-        this.userId = userId;
+    // Logs in a LogList are built on each read, so they are compared by value. They have no setters: changing
+    // the copy would not change the list, LogList.set() does.
+    @Override
+    public boolean equals(Object object) {
+        if (!(object instanceof Log)) {
+            return false;
+        }
+        Log log = (Log) object;
+        return userId == log.userId && Objects.equals(timestamp, log.timestamp) && Objects.equals(action, log.action);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(timestamp, action, userId);
     }
 
     @Override
     public String toString() {
-        return String.format("%s|%s|%s", timestamp.toString(), action, String.valueOf(userId));
+        return String.format("%s|%s|%s", RecordCodec.formatInstant(timestamp.getTime()), RecordCodec.escape(action),
+                String.valueOf(userId));
     }
 }
@@ -3,8 +3,14 @@ package model.objects;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import model.IOWriterReader;
+import model.IdIndex;
+import model.ReferenceIndex;
+import model.UniqueIndex;
+import model.ChangeTracker;
+import model.RecordCodec;
+
+import java.util.List;
 
-import java.util.function.Predicate;
 
 public class Product {
     protected int productId;
@@ -18,6 +24,12 @@ public class Product {
     protected double discount;
 
     public static ObservableList<Product> products = FXCollections.observableArrayList();
+    private static final IdIndex<Product> productsById = new IdIndex<>(products, Product::getProductId);
+    private static final ReferenceIndex<Product> productsByCategory =
+            new ReferenceIndex<>(products, product -> new int[] {product.categoryId});
+    private static final ReferenceIndex<Product> productsBySupplier =
+            new ReferenceIndex<>(products, product -> new int[] {product.supplierId});
+    private static final UniqueIndex<Product> productNames = new UniqueIndex<>(products, Product::getName);
 
     public Product(int productId, String name, int categoryId, int supplierId, int quantity,
                    double purchasingPrice, double sellingPrice) {
@@ -43,12 +55,44 @@ public class Product {
             this.profitMargin = ((sellingPrice - purchasingPrice) / purchasingPrice * 100) + "%";
     }
 
+    public static Product findById(int productId) {
+        return productsById.get(productId);
+    }
+
+    public static boolean isNameTaken(String name) {
+        return productNames.isTaken(name);
+    }
+
+    public static boolean isNameTaken(String name, Product ignored) {
+        return productNames.isTaken(name, ignored);
+    }
+
+    public static List<Product> findByCategoryId(int categoryId) {
+        return productsByCategory.findReferrers(categoryId);
+    }
+
+    public static boolean isCategoryUsed(int categoryId) {
+        return productsByCategory.isReferenced(categoryId);
+    }
+
+    public static List<Product> findBySupplierId(int supplierId) {
+        return productsBySupplier.findReferrers(supplierId);
+    }
+
+    public static boolean isSupplierUsed(int supplierId) {
+        return productsBySupplier.isReferenced(supplierId);
+    }
+
     public int getProductId() {
         return productId;
     }
 
     public void setProductId(int productId) {
+        ChangeTracker.delete(this);
+        int previousProductId = this.productId;
         this.productId = productId;
+        productsById.rekey(this, previousProductId);
+        ChangeTracker.update(this);
     }
 
     public String getName() {
@@ -57,11 +101,12 @@ public class Product {
 
     public void setName(String name) {
         this.name = name;
+        productNames.refresh(this);
+        ChangeTracker.update(this);
     }
 
     public String getCategoryName() {
-        Predicate<Category> categoryPredicate = category -> category.getCategoryId() == this.getCategoryId();
-        return Category.categories.filtered(categoryPredicate).get(0).categoryName;
+        return Category.findById(this.getCategoryId()).categoryName;
     }
 
     public int getCategoryId() {
@@ -70,11 +115,12 @@ public class Product {
 
     public void setCategoryId(int categoryId) {
         this.categoryId = categoryId;
+        productsByCategory.refresh(this);
+        ChangeTracker.update(this);
     }
 
     public String getSupplierName() {
-        Predicate<Supplier> supplierPredicate = supplier -> supplier.getSupplierId() == this.getSupplierId();
-        return Supplier.suppliers.filtered(supplierPredicate).get(0).name;
+        return Supplier.findById(this.getSupplierId()).name;
     }
 
     public int getSupplierId() {
@@ -83,6 +129,8 @@ public class Product {
 
     public void setSupplierId(int supplierId) {
         this.supplierId = supplierId;
+        productsBySupplier.refresh(this);
+        ChangeTracker.update(this);
     }
 
     public int getQuantity() {
@@ -91,6 +139,7 @@ public class Product {
 
     public void setQuantity(int quantity) {
         this.quantity = quantity;
+        ChangeTracker.update(this);
     }
 
     public double getPurchasingPrice() {
@@ -99,6 +148,7 @@ public class Product {
 
     public void setPurchasingPrice(double purchasingPrice) {
         this.purchasingPrice = purchasingPrice;
+        ChangeTracker.update(this);
     }
 
     public double getSellingPrice() {
@@ -107,6 +157,7 @@ public class Product {
 
     public void setSellingPrice(double sellingPrice) {
         this.sellingPrice = sellingPrice;
+        ChangeTracker.update(this);
     }
 
     public String getProfitMargin() {
@@ -115,6 +166,7 @@ public class Product {
 
     public void setProfitMargin(String profitMargin) {
         this.profitMargin = profitMargin;
+        ChangeTracker.update(this);
     }
 
     public double getDiscount() {
@@ -128,7 +180,7 @@ public class Product {
     @Override
     public String toString() {
         return String.format("%s|%s|%s|%s|%s|%s|%s|%s",
-                productId, name, categoryId, supplierId,
+                productId, RecordCodec.escape(name), categoryId, supplierId,
                 quantity, purchasingPrice, sellingPrice,
                 profitMargin
         );
@@ -4,6 +4,10 @@ import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 
 import model.IOWriterReader;
+import model.IdIndex;
+import model.UniqueIndex;
+import model.ChangeTracker;
+import model.RecordCodec;
 
 public class Supplier extends Object {
     protected int supplierId;
@@ -17,6 +21,10 @@ public class Supplier extends Object {
     protected String emailAddress;
     protected boolean status;
     public static ObservableList<Supplier> suppliers = FXCollections.observableArrayList();
+    private static final IdIndex<Supplier> suppliersById = new IdIndex<>(suppliers, Supplier::getSupplierId);
+    private static final UniqueIndex<Supplier> supplierNames = new UniqueIndex<>(suppliers, Supplier::getName);
+    private static final UniqueIndex<Supplier> supplierEmailAddresses =
+            new UniqueIndex<>(suppliers, Supplier::getEmailAddress);
 
     public Supplier(int supplierId, String name, String address, String postCode, String country, String stateOrProvince,
                     String city, String contactNumber, String emailAddress, boolean status) {
@@ -46,12 +54,36 @@ public class Supplier extends Object {
         this.status = true;
     }
 
+    public static Supplier findById(int supplierId) {
+        return suppliersById.get(supplierId);
+    }
+
+    public static boolean isNameTaken(String name) {
+        return supplierNames.isTaken(name);
+    }
+
+    public static boolean isNameTaken(String name, Supplier ignored) {
+        return supplierNames.isTaken(name, ignored);
+    }
+
+    public static boolean isEmailAddressTaken(String emailAddress) {
+        return supplierEmailAddresses.isTaken(emailAddress);
+    }
+
+    public static boolean isEmailAddressTaken(String emailAddress, Supplier ignored) {
+        return supplierEmailAddresses.isTaken(emailAddress, ignored);
+    }
+
     public int getSupplierId() {
         return supplierId;
     }
 
     public void setSupplierId(int supplierId) {
+        ChangeTracker.delete(this);
+        int previousSupplierId = this.supplierId;
         this.supplierId = supplierId;
+        suppliersById.rekey(this, previousSupplierId);
+        ChangeTracker.update(this);
     }
 
     public String getName() {
@@ -60,6 +92,8 @@ public class Supplier extends Object {
 
     public void setName(String name) {
         this.name = name;
+        supplierNames.refresh(this);
+        ChangeTracker.update(this);
     }
 
     public String getAddress() {
@@ -68,6 +102,7 @@ public class Supplier extends Object {
 
     public void setAddress(String address) {
         this.address = address;
+        ChangeTracker.update(this);
     }
 
     public String getPostCode() {
@@ -76,6 +111,7 @@ public class Supplier extends Object {
 
     public void setPostCode(String postCode) {
         this.postCode = postCode;
+        ChangeTracker.update(this);
     }
 
     public String getCountry() {
@@ -84,6 +120,7 @@ public class Supplier extends Object {
 
     public void setCountry(String country) {
         this.country = country;
+        ChangeTracker.update(this);
     }
 
     public String getStateOrProvince() {
@@ -92,6 +129,7 @@ public class Supplier extends Object {
 
     public void setStateOrProvince(String stateOrProvince) {
         this.stateOrProvince = stateOrProvince;
+        ChangeTracker.update(this);
     }
 
     public String getCity() {
@@ -100,6 +138,7 @@ public class Supplier extends Object {
 
     public void setCity(String city) {
         this.city = city;
+        ChangeTracker.update(this);
     }
 
     public String getContactNumber() {
@@ -108,6 +147,7 @@ public class Supplier extends Object {
 
     public void setContactNumber(String contactNumber) {
         this.contactNumber = contactNumber;
+        ChangeTracker.update(this);
     }
 
     public String getEmailAddress() {
@@ -116,6 +156,8 @@ public class Supplier extends Object {
 
     public void setEmailAddress(String emailAddress) {
         this.emailAddress = emailAddress;
+        supplierEmailAddresses.refresh(this);
+        ChangeTracker.update(this);
     }
 
     public String getStatusText() {
@@ -132,14 +174,15 @@ public class Supplier extends Object {
 
     public void setStatus(boolean status) {
         this.status = status;
+        ChangeTracker.update(this);
     }
 
     @Override
     public String toString() {
         return String.format("%s|%s|%s|%s|%s|%s|%s|%s|%s|%s",
-                supplierId, name, address, postCode,
-                country, stateOrProvince, city, contactNumber,
-                emailAddress, status
+                supplierId, RecordCodec.escape(name), RecordCodec.escape(address), RecordCodec.escape(postCode),
+                RecordCodec.escape(country), RecordCodec.escape(stateOrProvince), RecordCodec.escape(city),
+                RecordCodec.escape(contactNumber), RecordCodec.escape(emailAddress), status
         );
     }
 }
@@ -2,6 +2,10 @@ package model.objects;
 
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
+import model.ChangeTracker;
+import model.IdIndex;
+import model.UniqueIndex;
+import model.RecordCodec;
 
 abstract public class User {
     protected int userId;
@@ -14,13 +18,27 @@ abstract public class User {
     protected String emailAddress;
     protected boolean status;
     public static ObservableList<User> users = FXCollections.observableArrayList();
+    private static final IdIndex<User> usersById = new IdIndex<>(users, User::getUserId);
+    private static final UniqueIndex<User> usernames = new UniqueIndex<>(users, User::getUsername);
+
+    public static User findById(int userId) {
+        return usersById.get(userId);
+    }
+
+    public static boolean isUsernameTaken(String username) {
+        return usernames.isTaken(username);
+    }
 
     public int getUserId() {
         return userId;
     }
 
     public void setUserId(int userId) {
+        ChangeTracker.delete(this);
+        int previousUserId = this.userId;
         this.userId = userId;
+        usersById.rekey(this, previousUserId);
+        ChangeTracker.update(this);
     }
 
     public String getUsername() {
@@ -29,6 +47,8 @@ abstract public class User {
 
     public void setUsername(String username) {
         this.username = username;
+        usernames.refresh(this);
+        ChangeTracker.update(this);
     }
 
     public String getPassword() {
@@ -37,6 +57,7 @@ abstract public class User {
 
     public void setPassword(String password) {
         this.password = password;
+        ChangeTracker.update(this);
     }
 
     public String getRole() {
@@ -45,6 +66,7 @@ abstract public class User {
 
     public void setRole(String role) {
         this.role = role;
+        ChangeTracker.update(this);
     }
 
     public String getName() {
@@ -53,6 +75,7 @@ abstract public class User {
 
     public void setName(String name) {
         this.name = name;
+        ChangeTracker.update(this);
     }
 
     public String getAddress() {
@@ -61,6 +84,7 @@ abstract public class User {
 
     public void setAddress(String address) {
         this.address = address;
+        ChangeTracker.update(this);
     }
 
     public String getContactNumber() {
@@ -69,6 +93,7 @@ abstract public class User {
 
     public void setContactNumber(String contactNumber) {
         this.contactNumber = contactNumber;
+        ChangeTracker.update(this);
     }
 
     public String getEmailAddress() {
@@ -77,6 +102,7 @@ abstract public class User {
 
     public void setEmailAddress(String emailAddress) {
         this.emailAddress = emailAddress;
+        ChangeTracker.update(this);
     }
 
     public String getStatusText() {
@@ -93,12 +119,14 @@ abstract public class User {
 
     public void setStatus(boolean status) {
         this.status = status;
+        ChangeTracker.update(this);
     }
 
     @Override
     public String toString() {
         return String.format("%s|%s|%s|%s|%s|%s|%s|%s|%s",
-                userId, username, password, role, name, address,
-                contactNumber, emailAddress, status);
+                userId, RecordCodec.escape(username), RecordCodec.escape(password), RecordCodec.escape(role),
+                RecordCodec.escape(name), RecordCodec.escape(address), RecordCodec.escape(contactNumber),
+                RecordCodec.escape(emailAddress), status);
     }
 }